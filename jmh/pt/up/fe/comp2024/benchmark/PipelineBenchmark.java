@@ -0,0 +1,118 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.specs.util.SpecsIo;
+import utils.JmmProgramGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each stage of the compiler, and of the whole pipeline, on a single input file.
+ * <p>
+ * The input of a stage is produced once per fork by the stages before it. Stages that change their input, such as
+ * register allocation, give the same result every time, so they can be repeated on it. Run from the project
+ * directory, e.g. {@code gradle jmh --args="PipelineBenchmark -prof gc -p file=<path>"}. A file named
+ * {@code synthetic:<statements>} is a program from {@link JmmProgramGenerator} with that many statements per method,
+ * to see how the stages scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final String SYNTHETIC = "synthetic:";
+
+    @Param({
+            "test/pt/up/fe/comp/cp2/apps/Simple.jmm",
+            "test/pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayVarArgs.jmm",
+            "test/pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm",
+            "test/pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm",
+            "synthetic:100",
+            "synthetic:1000"
+    })
+    public String file;
+
+    @Param({"0"})
+    public int registerAllocation;
+
+    @Param({"false"})
+    public boolean classFile;
+
+    @Param({"false"})
+    public boolean parseTree;
+
+    private String code;
+    private Map<String, String> config;
+    private JmmParserResult parserResult;
+    private JmmSemanticsResult semanticsResult;
+    private OllirResult ollirResult;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        var input = new File(file);
+        if (file.startsWith(SYNTHETIC)) {
+            var shape = JmmProgramGenerator.Shape.DEFAULT
+                    .withStatements(Integer.parseInt(file.substring(SYNTHETIC.length())));
+            input = File.createTempFile("synthetic", ".jmm");
+            input.deleteOnExit();
+            SpecsIo.write(input, JmmProgramGenerator.generate(0, shape));
+        }
+
+        code = SpecsIo.read(input);
+        config = CompilerConfig.parseArgs(new String[]{
+                "-i=" + input.getPath(), "-r=" + registerAllocation, "-c=" + classFile, "-pt=" + parseTree});
+
+        parserResult = new JmmParserImpl().parse(code, config);
+        semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        ollirResult = new JmmOptimizationImpl().toOllir(semanticsResult);
+    }
+
+    @Benchmark
+    public JmmParserResult parse() {
+        return new JmmParserImpl().parse(code, config);
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis() {
+        return new JmmAnalysisImpl().semanticAnalysis(parserResult);
+    }
+
+    @Benchmark
+    public OllirResult toOllir() {
+        return new JmmOptimizationImpl().toOllir(semanticsResult);
+    }
+
+    @Benchmark
+    public OllirResult optimize() {
+        return new JmmOptimizationImpl().optimize(ollirResult);
+    }
+
+    @Benchmark
+    public JasminResult toJasmin() {
+        return new JasminBackendImpl().toJasmin(ollirResult);
+    }
+
+    @Benchmark
+    public JasminResult pipeline() {
+        var optimization = new JmmOptimizationImpl();
+        var parsed = new JmmParserImpl().parse(code, config);
+        var semantics = optimization.optimize(new JmmAnalysisImpl().semanticAnalysis(parsed));
+        var ollir = optimization.optimize(optimization.toOllir(semantics));
+        return new JasminBackendImpl().toJasmin(ollir);
+    }
+}
@@ -10,6 +10,18 @@ public class CompilerConfig {
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String REGISTER_ALLOCATOR = "registerAllocator";
+    private static final String CLASS_FILE = "classFile";
+    private static final String STATS = "stats";
+    private static final String PARSE_TREE = "parseTree";
+    private static final String EMIT_AST = "emitAst";
+    private static final String LOAD_AST = "loadAst";
+
+    public static final String GRAPH_ALLOCATOR = "graph";
+    public static final String LINEAR_ALLOCATOR = "linear";
+
+    public static final String STATS_TABLE = "table";
+    public static final String STATS_JSON = "json";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +30,12 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("ra", CompilerConfig.REGISTER_ALLOCATOR);
+        shortToLong.put("c", CompilerConfig.CLASS_FILE);
+        shortToLong.put("stats", CompilerConfig.STATS);
+        shortToLong.put("pt", CompilerConfig.PARSE_TREE);
+        shortToLong.put("emit-ast", CompilerConfig.EMIT_AST);
+        shortToLong.put("load-ast", CompilerConfig.LOAD_AST);
     }
 
 
@@ -41,6 +59,78 @@ public class CompilerConfig {
     }
 
 
+    public static String getRegisterAllocator(Map<String, String> config) {
+        var allocator = config.getOrDefault(REGISTER_ALLOCATOR, GRAPH_ALLOCATOR);
+        if (!allocator.equals(GRAPH_ALLOCATOR) && !allocator.equals(LINEAR_ALLOCATOR)) {
+            throw new RuntimeException("Unknown register allocator '" + allocator + "', expected '"
+                    + GRAPH_ALLOCATOR + "' or '" + LINEAR_ALLOCATOR + "'");
+        }
+        return allocator;
+    }
+
+    /**
+     * @return true if the backend should write class files directly instead of Jasmin code
+     */
+    public static boolean getClassFile(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(CLASS_FILE, "false"));
+    }
+
+    /**
+     * @return where to report the time and memory of each stage: {@link #STATS_TABLE} or {@link #STATS_JSON} on the
+     * standard output, or the path of a file to write the JSON to. Empty if no report was asked for.
+     */
+    public static Optional<String> getStats(Map<String, String> config) {
+        var stats = config.get(STATS);
+        if (stats == null || stats.equals("false")) {
+            return Optional.empty();
+        }
+        if (stats.equals("true") || stats.isEmpty()) {
+            return Optional.of(STATS_TABLE);
+        }
+        return Optional.of(stats);
+    }
+
+
+    /**
+     * @return true if the parser should build an ANTLR parse tree and convert it, instead of building the AST directly
+     */
+    public static boolean getParseTree(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PARSE_TREE, "false"));
+    }
+
+    /**
+     * @return the options that change the AST or the symbol table, which must be the same for a cached AST to be used
+     */
+    public static Map<String, String> getAstOptions(Map<String, String> config) {
+        return Map.of(PARSE_TREE, Boolean.toString(getParseTree(config)));
+    }
+
+    /**
+     * @return the file to write the annotated AST and symbol table to, after semantic analysis
+     */
+    public static Optional<File> getEmitAst(Map<String, String> config) {
+        return getAstFile(config, EMIT_AST);
+    }
+
+    /**
+     * @return the file to read the annotated AST and symbol table from, instead of parsing and analysing the input.
+     * It is ignored if it does not exist or was written for other code.
+     */
+    public static Optional<File> getLoadAst(Map<String, String> config) {
+        return getAstFile(config, LOAD_AST);
+    }
+
+    private static Optional<File> getAstFile(Map<String, String> config, String option) {
+        var file = config.get(option);
+        if (file == null) {
+            return Optional.empty();
+        }
+        if (file.isEmpty() || file.equals("true")) {
+            throw new RuntimeException("Option '" + option + "' expects the path of a file");
+        }
+        return Optional.of(new File(file));
+    }
+
     public static Map<String, String> getDefault() {
 
         var config = new HashMap<String, String>();
@@ -72,17 +162,22 @@ public class CompilerConfig {
                 throw new RuntimeException("Arguments should start with '-'");
             }
 
-            String shortOption = arg.substring(1, 2);
+            // options can be longer than one letter (e.g. '-ra=linear'), otherwise only the first letter counts
+            int equalIndex = arg.indexOf('=');
+            String shortOption = equalIndex < 0 ? arg.substring(1) : arg.substring(1, equalIndex);
+            if (!isShortOpt(shortOption)) {
+                shortOption = arg.substring(1, 2);
+            }
             if (!isShortOpt(shortOption)) {
                 throw new RuntimeException("Unrecognized option '-" + shortOption + "'");
             }
 
             String value = "true";
-            if (arg.length() > 2) {
-                String equalSign = arg.substring(2, 3);
+            if (arg.length() > shortOption.length() + 1) {
+                String equalSign = arg.substring(shortOption.length() + 1, shortOption.length() + 2);
                 if (equalSign.equals("=")) {
 
-                    value = arg.substring(3);
+                    value = arg.substring(shortOption.length() + 2);
                 }
             }
 
@@ -106,6 +201,9 @@ public class CompilerConfig {
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getRegisterAllocator(config);
+        getEmitAst(config);
+        getLoadAst(config);
 
         return config;
     }
@@ -6,12 +6,16 @@ import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.AstCache;
 import pt.up.fe.comp2024.backend.JasminBackendImpl;
 import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
 import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.CompilerEvents;
+import pt.up.fe.comp2024.utils.CompilerStats;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.File;
 import java.util.Map;
 
 public class Launcher {
@@ -27,23 +31,19 @@ public class Launcher {
         }
         String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
-
-        // Print AST
-        //System.out.println(parserResult.getRootNode().toTree());
-
-        // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
+        var statsOutput = CompilerConfig.getStats(config);
+        var stats = new CompilerStats(statsOutput.isPresent());
 
+        // Parsing and semantic analysis stages, unless a cache of their result for this code is given
+        JmmSemanticsResult semanticsResult = CompilerConfig.getLoadAst(config)
+                .flatMap(astFile -> stats.measure("ast loading", () -> AstCache.read(astFile, code, config)))
+                .orElseGet(() -> parseAndAnalyse(code, config, stats));
+        CompilerConfig.getEmitAst(config).ifPresent(astFile -> stats.measure("ast writing",
+                () -> AstCache.write(astFile, code, semanticsResult)));
 
         // Optimization stage
         JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
+        OllirResult ollirResult = stats.measure("ollir generation", () -> ollirGen.toOllir(semanticsResult));
         TestUtils.noErrors(ollirResult.getReports());
 
         // Print OLLIR code
@@ -51,11 +51,53 @@ public class Launcher {
 
         // Code generation stage
         JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
+        JasminResult jasminResult = stats.measure("code generation", () -> {
+            var event = new CompilerEvents.JasminGen();
+            event.begin();
+            var result = jasminGen.toJasmin(ollirResult);
+            event.className = ollirResult.getOllirClass().getClassName();
+            event.classFile = CompilerConfig.getClassFile(config);
+            event.commit();
+            return result;
+        });
         TestUtils.noErrors(jasminResult.getReports());
 
         // Print Jasmin code
         //System.out.println(jasminResult.getJasminCode());
+
+        statsOutput.ifPresent(output -> printStats(stats, output));
+    }
+
+    private static JmmSemanticsResult parseAndAnalyse(String code, Map<String, String> config, CompilerStats stats) {
+        // Parsing stage
+        JmmParserImpl parser = new JmmParserImpl();
+        JmmParserResult parserResult = stats.measure("parsing", () -> {
+            var event = new CompilerEvents.Parse();
+            event.begin();
+            var result = parser.parse(code, config);
+            event.sourceLength = code.length();
+            event.commit();
+            return result;
+        });
+        TestUtils.noErrors(parserResult.getReports());
+
+        // Print AST
+        //System.out.println(parserResult.getRootNode().toTree());
+
+        // Semantic Analysis stage
+        JmmAnalysisImpl sema = new JmmAnalysisImpl(stats);
+        JmmSemanticsResult semanticsResult = stats.measure("semantic analysis",
+                () -> sema.semanticAnalysis(parserResult));
+        TestUtils.noErrors(semanticsResult.getReports());
+        return semanticsResult;
+    }
+
+    private static void printStats(CompilerStats stats, String output) {
+        switch (output) {
+            case CompilerConfig.STATS_TABLE -> System.out.print(stats.toTable());
+            case CompilerConfig.STATS_JSON -> System.out.print(stats.toJson());
+            default -> SpecsIo.write(new File(output), stats.toJson());
+        }
     }
 
 }
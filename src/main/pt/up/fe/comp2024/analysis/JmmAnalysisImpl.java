@@ -10,6 +10,8 @@ import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.passes.*;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.CompilerEvents;
+import pt.up.fe.comp2024.utils.CompilerStats;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -19,7 +21,17 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
     private final List<AnalysisPass> analysisPasses;
 
+    private final CompilerStats stats;
+
     public JmmAnalysisImpl() {
+        this(CompilerStats.disabled());
+    }
+
+    /**
+     * @param stats where the building of the symbol table and each pass are measured
+     */
+    public JmmAnalysisImpl(CompilerStats stats) {
+        this.stats = stats;
         this.analysisPasses = List.of(new UndeclaredVariable(), new MethodDecl(), new MethodCall(), new NewObject(), new ArithmeticOperation(), new ArrayAccess(), new AssignmentType(), new ThisReference(), new VarUsageAndDecl(), new Conditions(), new FieldsAndImports());
     }
 
@@ -28,14 +40,15 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
+        SymbolTable table = stats.measure("symbol table", () -> JmmSymbolTableBuilder.build(rootNode));
 
         List<Report> reports = new ArrayList<>();
 
         // Visit all nodes in the AST
         for (var analysisPass : analysisPasses) {
             try {
-                var passReports = analysisPass.analyze(rootNode, table);
+                var passReports = stats.measure(analysisPass.getClass().getSimpleName(),
+                        () -> runPass(analysisPass, rootNode, table));
                 reports.addAll(passReports);
 
                 if (!reports.isEmpty()) {
@@ -56,4 +69,14 @@ public class JmmAnalysisImpl implements JmmAnalysis {
         System.out.println(reports);
         return new JmmSemanticsResult(parserResult, table, reports);
     }
+
+    private static List<Report> runPass(AnalysisPass analysisPass, JmmNode rootNode, SymbolTable table) {
+        var event = new CompilerEvents.AnalysisPass();
+        event.begin();
+        var passReports = analysisPass.analyze(rootNode, table);
+        event.passClass = analysisPass.getClass();
+        event.reports = passReports.size();
+        event.commit();
+        return passReports;
+    }
 }
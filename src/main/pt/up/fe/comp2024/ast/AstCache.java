@@ -0,0 +1,511 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.specs.util.SpecsLogs;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Stores the annotated AST and the symbol table of a file in a compact binary form, so later compilations of the same
+ * code can skip parsing and semantic analysis.
+ * <p>
+ * The file starts with a digest of the source code, of the compiler classes and of the options that change the AST,
+ * so a cache written for other code, by another build of the compiler or with other options is never used. Strings
+ * are written once, in a table, and referred to by index; kinds are bytes; counts and positions are varints, lines as
+ * the difference to the line of the previous node. Attributes that hold nodes, e.g. {@code ifCond}, refer to them by
+ * their index in a preorder traversal of the tree.
+ */
+public class AstCache {
+
+    private static final int MAGIC = 0x4A4D4D41;
+    private static final int VERSION = 2;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int FALSE = 2;
+    private static final int TRUE = 3;
+    private static final int NODE = 4;
+    private static final int LIST = 5;
+    private static final int TYPE = 6;
+    private static final int TYPE_REFERENCE = 7;
+    private static final int INTEGER = 8;
+
+    private static final List<String> POSITIONS = List.of("lineStart", "colStart", "lineEnd", "colEnd");
+
+    private AstCache() {
+    }
+
+    /**
+     * Writes the cache, or warns and leaves no file if it cannot be written. The cache is an optimization, failing to
+     * write it must not stop the compilation.
+     */
+    public static void write(File file, String code, JmmSemanticsResult semanticsResult) {
+        var writer = new Writer();
+        writer.writeNode(semanticsResult.getRootNode());
+        writer.writeSymbolTable(semanticsResult.getSymbolTable());
+        var kindNames = Arrays.stream(Kind.values()).mapToInt(kind -> writer.getString(kind.getNodeName())).toArray();
+
+        try (var output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.write(getDigest(code, semanticsResult.getConfig()));
+
+            writeVarint(output, writer.strings.size());
+            for (var string : writer.strings.keySet()) {
+                var bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarint(output, bytes.length);
+                output.write(bytes);
+            }
+
+            writeVarint(output, kindNames.length);
+            for (int kindName : kindNames) {
+                writeVarint(output, kindName);
+            }
+
+            writer.body.writeTo(output);
+        } catch (IOException e) {
+            SpecsLogs.warn("Could not write the AST to '" + file + "': " + e.getMessage(), e);
+            file.delete();
+        }
+    }
+
+    /**
+     * @return the cached result, or nothing if the file does not exist, cannot be read, or was written for other code,
+     * by another build of the compiler or with other options
+     */
+    public static Optional<JmmSemanticsResult> read(File file, String code, Map<String, String> config) {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readUnsignedByte() != VERSION) {
+                return Optional.empty();
+            }
+            var expectedDigest = getDigest(code, config);
+            var digest = new byte[expectedDigest.length];
+            input.readFully(digest);
+            if (!Arrays.equals(digest, expectedDigest)) {
+                return Optional.empty();
+            }
+
+            var reader = new Reader(input);
+            var root = reader.readNode();
+            reader.resolveNodeReferences();
+            var table = reader.readSymbolTable();
+            return Optional.of(new JmmSemanticsResult(root, table, new ArrayList<>(), config));
+        } catch (IOException | RuntimeException e) {
+            // a damaged cache is as good as none
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] getDigest(String code, Map<String, String> config) {
+        var digest = newDigest();
+        digest.update(Build.FINGERPRINT);
+        digest.update(new TreeMap<>(CompilerConfig.getAstOptions(config)).toString().getBytes(StandardCharsets.UTF_8));
+        return digest.digest(code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Digest of the path, size and modification time of the files of the compiler, the jar or the class directory they
+     * are loaded from, which any rebuild changes. Reading the files themselves would cost a good part of what the cache
+     * saves. Computed once and only if a cache is used.
+     */
+    private static class Build {
+
+        private static final byte[] FINGERPRINT = computeFingerprint();
+
+        private static byte[] computeFingerprint() {
+            var digest = newDigest();
+            try {
+                var location = Path.of(AstCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                try (var files = Files.walk(location)) {
+                    for (var path : files.filter(Files::isRegularFile).sorted().toList()) {
+                        var file = location.relativize(path) + " " + Files.size(path) + " "
+                                + Files.getLastModifiedTime(path).toMillis() + "\n";
+                        digest.update(file.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                return digest.digest();
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // a build that cannot be identified never reuses a cache, not even one it wrote itself
+                return digest.digest(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static void writeVarint(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static void writeSignedVarint(DataOutput output, int value) throws IOException {
+        writeVarint(output, (value << 1) ^ (value >> 31));
+    }
+
+    private static int readSignedVarint(DataInput input) throws IOException {
+        int zigzag = readVarint(input);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static int readVarint(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static class Writer {
+
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<JmmNode, Integer> nodes = new IdentityHashMap<>();
+        private final Map<Type, Integer> types = new IdentityHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream output = new DataOutputStream(body);
+        private int previousLine;
+
+        private int getString(String string) {
+            return strings.computeIfAbsent(string, key -> strings.size());
+        }
+
+        private void writeNode(JmmNode root) {
+            numberNodes(root);
+            try {
+                writeNodeTree(root);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void numberNodes(JmmNode node) {
+            nodes.put(node, nodes.size());
+            for (int i = 0; i < node.getNumChildren(); i++) {
+                numberNodes(node.getJmmChild(i));
+            }
+        }
+
+        private void writeNodeTree(JmmNode node) throws IOException {
+            output.writeByte(Kind.fromString(node.getKind()).ordinal());
+
+            var attributes = new ArrayList<>(node.getAttributes());
+            var positions = getPositions(node);
+            output.writeByte(positions != null ? 1 : 0);
+            if (positions != null) {
+                writeSignedVarint(output, positions[0] - previousLine);
+                writeVarint(output, positions[1]);
+                writeSignedVarint(output, positions[2] - positions[0]);
+                writeVarint(output, positions[3]);
+                previousLine = positions[0];
+                attributes.removeAll(POSITIONS);
+            }
+
+            writeVarint(output, attributes.size());
+            for (var attribute : attributes) {
+                writeVarint(output, getString(attribute));
+                var value = node.getOptionalObject(attribute).orElse(null);
+                if (value instanceof JmmNode reference) {
+                    output.writeByte(NODE);
+                    writeVarint(output, getNodeIndex(reference));
+                } else {
+                    writeValue(value);
+                }
+            }
+
+            writeVarint(output, node.getNumChildren());
+            for (int i = 0; i < node.getNumChildren(); i++) {
+                writeNodeTree(node.getJmmChild(i));
+            }
+        }
+
+        /**
+         * @return the positions of the node, or null if it does not have them all as non-negative integers
+         */
+        private static int[] getPositions(JmmNode node) {
+            var positions = new int[POSITIONS.size()];
+            for (int i = 0; i < positions.length; i++) {
+                var position = node.getOptionalObject(POSITIONS.get(i)).orElse(null);
+                if (!(position instanceof String string) || !isCanonicalPosition(string)) {
+                    return null;
+                }
+                positions[i] = Integer.parseInt(string);
+            }
+            return positions;
+        }
+
+        /**
+         * @return true if the position is written as the integer it reads back as, e.g. not "007"
+         */
+        private static boolean isCanonicalPosition(String position) {
+            if (position.isEmpty() || position.length() > 9 || (position.charAt(0) == '0' && position.length() > 1)) {
+                return false;
+            }
+            for (int i = 0; i < position.length(); i++) {
+                if (position.charAt(i) < '0' || position.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int getNodeIndex(JmmNode node) {
+            var index = nodes.get(node);
+            if (index == null) {
+                throw new RuntimeException("Attribute refers to node " + node + ", which is not in the tree");
+            }
+            return index;
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                output.writeByte(NULL);
+            } else if (value instanceof String string) {
+                output.writeByte(STRING);
+                writeVarint(output, getString(string));
+            } else if (value instanceof Boolean bool) {
+                output.writeByte(bool ? TRUE : FALSE);
+            } else if (value instanceof Integer integer) {
+                output.writeByte(INTEGER);
+                writeSignedVarint(output, integer);
+            } else if (value instanceof List<?> list) {
+                output.writeByte(LIST);
+                writeVarint(output, list.size());
+                for (var element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Type type) {
+                writeType(type);
+            } else {
+                throw new RuntimeException("Cannot write value of " + value.getClass() + ": " + value);
+            }
+        }
+
+        private void writeType(Type type) throws IOException {
+            // types are shared, e.g. between the symbol table and the nodes, and the passes may annotate them
+            var index = types.get(type);
+            if (index != null) {
+                output.writeByte(TYPE_REFERENCE);
+                writeVarint(output, index);
+                return;
+            }
+            types.put(type, types.size());
+
+            output.writeByte(TYPE);
+            writeVarint(output, getString(type.getName()));
+            output.writeBoolean(type.isArray());
+            var attributes = type.getAttributes();
+            writeVarint(output, attributes.size());
+            for (var attribute : attributes) {
+                writeVarint(output, getString(attribute));
+                writeValue(type.getOptionalObject(attribute).orElse(null));
+            }
+        }
+
+        private void writeSymbolTable(SymbolTable table) {
+            try {
+                writeValue(table.getClassName());
+                writeValue(table.getSuper());
+                writeValue(table.getImports());
+                writeSymbols(table.getFields());
+
+                var methods = table.getMethods();
+                writeVarint(output, methods.size());
+                for (var method : methods) {
+                    writeValue(method);
+                    writeValue(table.getReturnType(method));
+                    writeSymbols(table.getParameters(method));
+                    writeSymbols(table.getLocalVariables(method));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeSymbols(List<Symbol> symbols) throws IOException {
+            output.writeBoolean(symbols != null);
+            if (symbols == null) {
+                return;
+            }
+
+            writeVarint(output, symbols.size());
+            for (var symbol : symbols) {
+                writeValue(symbol.getType());
+                writeValue(symbol.getName());
+            }
+        }
+    }
+
+    private record NodeReference(int index) {
+    }
+
+    private record PendingReference(JmmNode node, String attribute, int index) {
+    }
+
+    private static class Reader {
+
+        private final DataInputStream input;
+        private final String[] strings;
+        private final Kind[] kinds;
+        private final List<JmmNode> nodes = new ArrayList<>();
+        private final List<Type> types = new ArrayList<>();
+        private final List<PendingReference> references = new ArrayList<>();
+        private int previousLine;
+
+        private Reader(DataInputStream input) throws IOException {
+            this.input = input;
+
+            strings = new String[readVarint(input)];
+            for (int i = 0; i < strings.length; i++) {
+                var bytes = new byte[readVarint(input)];
+                input.readFully(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            kinds = new Kind[readVarint(input)];
+            for (int i = 0; i < kinds.length; i++) {
+                kinds[i] = Kind.fromString(strings[readVarint(input)]);
+            }
+        }
+
+        private JmmNode readNode() throws IOException {
+            var node = new CompactJmmNode(kinds[input.readUnsignedByte()]);
+            nodes.add(node);
+
+            if (input.readUnsignedByte() != 0) {
+                int lineStart = previousLine + readSignedVarint(input);
+                int colStart = readVarint(input);
+                int lineEnd = lineStart + readSignedVarint(input);
+                int colEnd = readVarint(input);
+                node.put(POSITIONS.get(0), Integer.toString(lineStart));
+                node.put(POSITIONS.get(1), Integer.toString(colStart));
+                node.put(POSITIONS.get(2), Integer.toString(lineEnd));
+                node.put(POSITIONS.get(3), Integer.toString(colEnd));
+                previousLine = lineStart;
+            }
+
+            int attributes = readVarint(input);
+            for (int i = 0; i < attributes; i++) {
+                var attribute = strings[readVarint(input)];
+                var value = readValue();
+                // references are put as they are until the node exists, so the attributes keep their order
+                node.putObject(attribute, value);
+                if (value instanceof NodeReference reference) {
+                    references.add(new PendingReference(node, attribute, reference.index()));
+                }
+            }
+
+            int children = readVarint(input);
+            for (int i = 0; i < children; i++) {
+                node.add(readNode());
+            }
+            return node;
+        }
+
+        private void resolveNodeReferences() {
+            for (var reference : references) {
+                reference.node().putObject(reference.attribute(), nodes.get(reference.index()));
+            }
+        }
+
+        private Object readValue() throws IOException {
+            int tag = input.readUnsignedByte();
+            return switch (tag) {
+                case NULL -> null;
+                case STRING -> strings[readVarint(input)];
+                case FALSE -> false;
+                case TRUE -> true;
+                case INTEGER -> readSignedVarint(input);
+                case NODE -> new NodeReference(readVarint(input));
+                case LIST -> {
+                    int size = readVarint(input);
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    yield list;
+                }
+                case TYPE -> readType();
+                case TYPE_REFERENCE -> types.get(readVarint(input));
+                default -> throw new IOException("Unknown value tag " + tag);
+            };
+        }
+
+        private Type readType() throws IOException {
+            var type = new Type(strings[readVarint(input)], input.readBoolean());
+            types.add(type);
+            int attributes = readVarint(input);
+            for (int i = 0; i < attributes; i++) {
+                var attribute = strings[readVarint(input)];
+                type.putObject(attribute, readValue());
+            }
+            return type;
+        }
+
+        private JmmSymbolTable readSymbolTable() throws IOException {
+            var className = (String) readValue();
+            var parentClass = (String) readValue();
+            @SuppressWarnings("unchecked")
+            var imports = (List<String>) readValue();
+
+            Map<String, List<Symbol>> locals = new HashMap<>();
+            locals.put(className, readSymbols());
+
+            List<String> methods = new ArrayList<>();
+            Map<String, Type> returnTypes = new HashMap<>();
+            Map<String, List<Symbol>> params = new HashMap<>();
+            int methodCount = readVarint(input);
+            for (int i = 0; i < methodCount; i++) {
+                var method = (String) readValue();
+                methods.add(method);
+                returnTypes.put(method, (Type) readValue());
+                params.put(method, readSymbols());
+                locals.put(method, readSymbols());
+            }
+
+            return new JmmSymbolTable(className, methods, returnTypes, params, locals, imports, parentClass);
+        }
+
+        private List<Symbol> readSymbols() throws IOException {
+            if (!input.readBoolean()) {
+                return null;
+            }
+
+            int size = readVarint(input);
+            List<Symbol> symbols = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                var type = (Type) readValue();
+                symbols.add(new Symbol(type, (String) readValue()));
+            }
+            return symbols;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link JmmNode} that keeps the attributes every node has, or that the passes read the most, in fields instead of
+ * a map: the position, {@code name}, {@code op}, {@code value} and {@code type}. The kind is stored as a {@link Kind}
+ * and the hierarchy is shared by all nodes of the same kind.
+ * <p>
+ * It behaves as {@link pt.up.fe.comp.jmm.ast.JmmNodeImpl}: positions are read back as strings, and other attributes,
+ * or values of an unexpected type, go to a small list of extra attributes. Trees may mix both classes.
+ */
+public class CompactJmmNode implements JmmNode {
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final List<List<String>> HIERARCHIES = Arrays.stream(KINDS)
+            .map(CompactJmmNode::getHierarchy)
+            .toList();
+
+    private static final String LINE_START = "lineStart";
+    private static final String COL_START = "colStart";
+    private static final String LINE_END = "lineEnd";
+    private static final String COL_END = "colEnd";
+    private static final String NAME = "name";
+    private static final String OP = "op";
+    private static final String VALUE = "value";
+    private static final String TYPE = "type";
+    private static final List<String> FIELDS = List.of(LINE_START, COL_START, LINE_END, COL_END, NAME, OP, VALUE, TYPE);
+    private static final Set<String> POSITIONS = Set.of(LINE_START, COL_START, LINE_END, COL_END);
+
+    private final byte kind;
+    private JmmNode parent;
+    private final List<JmmNode> children = new ArrayList<>();
+
+    // bit i is set if the attribute FIELDS[i] is in its field
+    private byte present;
+    private int lineStart;
+    private int colStart;
+    private int lineEnd;
+    private int colEnd;
+    private String name;
+    private String op;
+    private String value;
+    private Object type;
+
+    private String[] extraNames;
+    private Object[] extraValues;
+    private int extras;
+
+    public CompactJmmNode(Kind kind) {
+        this.kind = (byte) kind.ordinal();
+    }
+
+    /**
+     * @return the hierarchy the parser gives to nodes of the kind, e.g. [BinaryExpr, Expr]
+     */
+    public static List<String> getHierarchy(Kind kind) {
+        if (kind.isType()) {
+            return List.of(kind.getNodeName(), "Type");
+        }
+        if (kind.isMethodDecl()) {
+            return List.of(kind.getNodeName(), "MethodDecl");
+        }
+        if (kind.isStmt()) {
+            return List.of(kind.getNodeName(), "Stmt");
+        }
+        if (kind.isExpr()) {
+            return List.of(kind.getNodeName(), "Expr");
+        }
+        return List.of(kind.getNodeName());
+    }
+
+    public Kind getNodeKind() {
+        return KINDS[kind];
+    }
+
+    @Override
+    public String getKind() {
+        return KINDS[kind].getNodeName();
+    }
+
+    @Override
+    public Collection<String> getHierarchy() {
+        return HIERARCHIES.get(kind);
+    }
+
+    public int getLineStart() {
+        return isPresent(LINE_START) ? lineStart : -1;
+    }
+
+    public int getColStart() {
+        return isPresent(COL_START) ? colStart : -1;
+    }
+
+    @Override
+    public Collection<String> getAttributes() {
+        List<String> attributes = new ArrayList<>(FIELDS.size() + extras);
+        for (int i = 0; i < FIELDS.size(); i++) {
+            if ((present & (1 << i)) != 0) {
+                attributes.add(FIELDS.get(i));
+            }
+        }
+        for (int i = 0; i < extras; i++) {
+            attributes.add(extraNames[i]);
+        }
+        return attributes;
+    }
+
+    @Override
+    public boolean hasAttribute(String attribute) {
+        return isPresent(attribute) || indexOfExtra(attribute) >= 0;
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        var attributeValue = getValue(attribute);
+        SpecsCheck.checkNotNull(attributeValue,
+                () -> "Node " + getKind() + " does not contain attribute '" + attribute + "'");
+        return attributeValue;
+    }
+
+    private Object getValue(String attribute) {
+        if (!isPresent(attribute)) {
+            int index = indexOfExtra(attribute);
+            return index >= 0 ? extraValues[index] : null;
+        }
+
+        return switch (attribute) {
+            case LINE_START -> Integer.toString(lineStart);
+            case COL_START -> Integer.toString(colStart);
+            case LINE_END -> Integer.toString(lineEnd);
+            case COL_END -> Integer.toString(colEnd);
+            case NAME -> name;
+            case OP -> op;
+            case VALUE -> value;
+            default -> type;
+        };
+    }
+
+    @Override
+    public Object putObject(String attribute, Object newValue) {
+        var previous = getValue(attribute);
+
+        int bit = getFieldBit(attribute);
+        if (bit >= 0 && setField(attribute, newValue)) {
+            present |= (byte) (1 << bit);
+            removeExtra(attribute);
+        } else {
+            if (bit >= 0) {
+                present &= (byte) ~(1 << bit);
+            }
+            putExtra(attribute, newValue);
+        }
+        return previous;
+    }
+
+    /**
+     * @return false if the value does not fit the field of the attribute
+     */
+    private boolean setField(String attribute, Object newValue) {
+        if (newValue == null) {
+            return false;
+        }
+        if (attribute.equals(TYPE)) {
+            type = newValue;
+            return true;
+        }
+        if (!(newValue instanceof String string)) {
+            return false;
+        }
+
+        if (POSITIONS.contains(attribute)) {
+            int position;
+            try {
+                position = Integer.parseInt(string);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            // only values that read back the same
+            if (!Integer.toString(position).equals(string)) {
+                return false;
+            }
+
+            switch (attribute) {
+                case LINE_START -> lineStart = position;
+                case COL_START -> colStart = position;
+                case LINE_END -> lineEnd = position;
+                default -> colEnd = position;
+            }
+            return true;
+        }
+
+        switch (attribute) {
+            case NAME -> name = string;
+            case OP -> op = string;
+            default -> value = string;
+        }
+        return true;
+    }
+
+    private boolean isPresent(String attribute) {
+        int bit = getFieldBit(attribute);
+        return bit >= 0 && (present & (1 << bit)) != 0;
+    }
+
+    /**
+     * @return the index of the attribute in {@link #FIELDS}, or -1 if it has no field
+     */
+    private static int getFieldBit(String attribute) {
+        return switch (attribute) {
+            case LINE_START -> 0;
+            case COL_START -> 1;
+            case LINE_END -> 2;
+            case COL_END -> 3;
+            case NAME -> 4;
+            case OP -> 5;
+            case VALUE -> 6;
+            case TYPE -> 7;
+            default -> -1;
+        };
+    }
+
+    private int indexOfExtra(String attribute) {
+        for (int i = 0; i < extras; i++) {
+            if (extraNames[i].equals(attribute)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void putExtra(String attribute, Object newValue) {
+        int index = indexOfExtra(attribute);
+        if (index >= 0) {
+            extraValues[index] = newValue;
+            return;
+        }
+
+        if (extraNames == null) {
+            extraNames = new String[2];
+            extraValues = new Object[2];
+        } else if (extras == extraNames.length) {
+            extraNames = Arrays.copyOf(extraNames, extras * 2);
+            extraValues = Arrays.copyOf(extraValues, extras * 2);
+        }
+        extraNames[extras] = attribute;
+        extraValues[extras] = newValue;
+        extras++;
+    }
+
+    private void removeExtra(String attribute) {
+        int index = indexOfExtra(attribute);
+        if (index < 0) {
+            return;
+        }
+
+        extras--;
+        System.arraycopy(extraNames, index + 1, extraNames, index, extras - index);
+        System.arraycopy(extraValues, index + 1, extraValues, index, extras - index);
+        extraNames[extras] = null;
+        extraValues[extras] = null;
+    }
+
+    @Override
+    public JmmNode getJmmParent() {
+        return parent;
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        return new ArrayList<>(children);
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public JmmNode getChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public int getNumChildren() {
+        return children.size();
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        children.add(index, child);
+        child.setParent(this);
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        var currentChild = children.get(index);
+        var newNodeParent = newNode.getJmmParent();
+        int newNodeIndex = newNodeParent != null ? newNode.getIndexOfSelf() : -1;
+
+        children.set(index, newNode);
+        currentChild.removeParent();
+
+        // the new node leaves its place to the child it replaces, as in JmmNodeImpl
+        if (newNodeParent != null) {
+            newNode.removeParent();
+            newNodeParent.setChild(currentChild, newNodeIndex);
+        }
+        newNode.setParent(this);
+    }
+
+    /**
+     * @return the removed child, or null if the node has no child at the index
+     */
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        if (index < 0 || index >= children.size()) {
+            return null;
+        }
+
+        var removedChild = children.remove(index);
+        removedChild.removeParent();
+        return removedChild;
+    }
+
+    /**
+     * @return the index the child had, or -1 if it is not a child of this node
+     */
+    @Override
+    public int removeJmmChild(JmmNode node) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == node) {
+                removeJmmChild(i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the node from its parent, if it has one.
+     */
+    @Override
+    public JmmNode detach() {
+        if (parent != null) {
+            parent.removeJmmChild(this);
+        }
+        return this;
+    }
+
+    @Override
+    public void removeParent() {
+        parent = null;
+    }
+
+    @Override
+    public void setParent(JmmNode parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public JmmNode copyNode() {
+        var copy = new CompactJmmNode(getNodeKind());
+        copy.present = present;
+        copy.lineStart = lineStart;
+        copy.colStart = colStart;
+        copy.lineEnd = lineEnd;
+        copy.colEnd = colEnd;
+        copy.name = name;
+        copy.op = op;
+        copy.value = value;
+        copy.type = type;
+        if (extraNames != null) {
+            copy.extraNames = extraNames.clone();
+            copy.extraValues = extraValues.clone();
+            copy.extras = extras;
+        }
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        var attributes = getAttributes().stream()
+                .filter(attribute -> !POSITIONS.contains(attribute))
+                .map(attribute -> attribute + ": " + get(attribute))
+                .collect(Collectors.joining(", ", " (", ")"));
+
+        var string = new StringBuilder(getKind());
+        if (!attributes.equals(" ()")) {
+            string.append(attributes);
+        }
+        if (SpecsSystem.isDebug() && isPresent(LINE_START)) {
+            string.append(' ').append(lineStart).append(':').append(colStart).append("->").append(lineEnd)
+                    .append(':').append(colEnd);
+        }
+        return string.toString();
+    }
+}
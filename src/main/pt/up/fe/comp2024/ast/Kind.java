@@ -4,8 +4,11 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.SpecsStrings;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Set;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public enum Kind {
     PROGRAM,
@@ -56,6 +59,9 @@ public enum Kind {
     public static final Set<Kind> EXPRESSIONS = Set.of(PRIORITY_EXPR, UNARY_EXPR, BINARY_EXPR, LIST_ACCESS, LENGTH_CALL,
             METHOD_CALL, NEW_OBJECT, NEW_ARRAY, ARRAY, INTEGER_LITERAL, BOOLEAN_LITERAL, THIS_LITERAL, VAR_REF_EXPR);
 
+    private static final Map<String, Kind> BY_NODE_NAME = Arrays.stream(values())
+            .collect(Collectors.toMap(Kind::getNodeName, Function.identity()));
+
     private final String name;
 
     public static List<JmmNode> getTypeChildren(JmmNode parent) {
@@ -71,13 +77,11 @@ public enum Kind {
     }
 
     public static Kind fromString(String kind) {
-
-        for (Kind k : Kind.values()) {
-            if (k.getNodeName().equals(kind)) {
-                return k;
-            }
+        var k = BY_NODE_NAME.get(kind);
+        if (k == null) {
+            throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
         }
-        throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
+        return k;
     }
 
     public String getNodeName() {
@@ -124,6 +128,9 @@ public enum Kind {
      * @return
      */
     public boolean check(JmmNode node) {
+        if (node instanceof CompactJmmNode compactNode) {
+            return compactNode.getNodeKind() == this;
+        }
         return node.getKind().equals(getNodeName());
     }
 
@@ -0,0 +1,53 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Result of the backend when it writes the class file itself. Compiling only writes the bytes, the Jasmin text is
+ * only produced if someone asks for it.
+ */
+public class ClassFileResult extends JasminResult {
+
+    private final JasminClass jasminClass;
+    private final byte[] classBytes;
+    private String jasminCode;
+
+    public ClassFileResult(OllirResult ollirResult, JasminClass jasminClass, byte[] classBytes, List<Report> reports) {
+        super(ollirResult, null, reports);
+        this.jasminClass = jasminClass;
+        this.classBytes = classBytes;
+    }
+
+    public byte[] getClassBytes() {
+        return classBytes;
+    }
+
+    @Override
+    public String getJasminCode() {
+        if (jasminCode == null) {
+            jasminCode = jasminClass.toString();
+        }
+        return jasminCode;
+    }
+
+    @Override
+    public File compile(File outputDir) {
+        SpecsIo.mkdir(outputDir);
+        var classFile = new File(outputDir, getClassName() + ".class");
+        try {
+            Files.write(classFile.toPath(), classBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return classFile;
+    }
+}
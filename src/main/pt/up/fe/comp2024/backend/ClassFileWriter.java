@@ -0,0 +1,484 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Writes a {@link JasminClass} directly as a class file, doing the work of the Jasmin assembler.
+ * <p>
+ * Classes are written with version 52 (Java 8), so every method with branches gets a StackMapTable, computed by
+ * {@link FrameAnalysis}, and is checked by the split verifier.
+ */
+public class ClassFileWriter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 52;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int SAME_FRAME = 0;
+    private static final int SAME_LOCALS_1_STACK_ITEM_FRAME = 64;
+    private static final int FULL_FRAME = 255;
+
+    private static final int ITEM_TOP = 0;
+    private static final int ITEM_INTEGER = 1;
+    private static final int ITEM_OBJECT = 7;
+    private static final int ITEM_UNINITIALIZED = 8;
+
+    private static final int LDC_W = 0x13;
+    private static final int WIDE = 0xc4;
+
+    private final JasminClass jasminClass;
+    private final ConstantPool constantPool = new ConstantPool();
+
+    public ClassFileWriter(JasminClass jasminClass) {
+        this.jasminClass = jasminClass;
+    }
+
+    public byte[] write() {
+        try {
+            // the constant pool comes first in the file but is only complete once everything else is written
+            var body = new ByteArrayOutputStream();
+            writeBody(new DataOutputStream(body));
+
+            var classFile = new ByteArrayOutputStream();
+            var out = new DataOutputStream(classFile);
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            constantPool.write(out);
+            body.writeTo(out);
+            out.flush();
+            return classFile.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBody(DataOutputStream out) throws IOException {
+        out.writeShort(getAccessFlags(jasminClass.getModifiers()) | ACC_SUPER);
+        out.writeShort(constantPool.classRef(jasminClass.getName()));
+        out.writeShort(constantPool.classRef(jasminClass.getSuperName()));
+        out.writeShort(0);
+
+        out.writeShort(jasminClass.getFields().size());
+        for (var field : jasminClass.getFields()) {
+            out.writeShort(getAccessFlags(List.of(field.access())));
+            out.writeShort(constantPool.utf8(field.name()));
+            out.writeShort(constantPool.utf8(field.descriptor()));
+            out.writeShort(0);
+        }
+
+        out.writeShort(jasminClass.getMethods().size());
+        for (var method : jasminClass.getMethods()) {
+            writeMethod(method, out);
+        }
+
+        out.writeShort(0);
+    }
+
+    private static int getAccessFlags(List<String> modifiers) {
+        int flags = 0;
+        for (var modifier : modifiers) {
+            flags |= switch (modifier) {
+                case "public" -> ACC_PUBLIC;
+                case "private" -> ACC_PRIVATE;
+                case "protected" -> ACC_PROTECTED;
+                case "static" -> ACC_STATIC;
+                case "final" -> ACC_FINAL;
+                default -> throw new RuntimeException("Unknown access modifier '" + modifier + "'");
+            };
+        }
+        return flags;
+    }
+
+    private void writeMethod(JasminMethod method, DataOutputStream out) throws IOException {
+        out.writeShort(getAccessFlags(method.getModifiers()));
+        out.writeShort(constantPool.utf8(method.getName()));
+        out.writeShort(constantPool.utf8(method.getDescriptor()));
+
+        int[] offsets = new int[method.getInstructions().size()];
+        byte[] code = assemble(method, offsets);
+        byte[] stackMapTable = getStackMapTable(method, offsets);
+        int attributesLength = stackMapTable.length == 0 ? 0 : 2 + 4 + stackMapTable.length;
+
+        out.writeShort(1);
+        out.writeShort(constantPool.utf8("Code"));
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2 + attributesLength);
+        out.writeShort(method.getMaxStack());
+        out.writeShort(method.getMaxLocals());
+        out.writeInt(code.length);
+        out.write(code);
+        // no exception table
+        out.writeShort(0);
+        if (stackMapTable.length == 0) {
+            out.writeShort(0);
+            return;
+        }
+        out.writeShort(1);
+        out.writeShort(constantPool.utf8("StackMapTable"));
+        out.writeInt(stackMapTable.length);
+        out.write(stackMapTable);
+    }
+
+    /**
+     * @return the StackMapTable attribute without its header, or nothing if the method needs no frames
+     */
+    private byte[] getStackMapTable(JasminMethod method, int[] offsets) throws IOException {
+        // labels at the same offset share a frame, the last one has the state merged from all of them
+        SortedMap<Integer, FrameAnalysis.Frame> frames = new TreeMap<>();
+        new FrameAnalysis(jasminClass.getName(), method).getFrames()
+                .forEach((index, frame) -> frames.put(offsets[index], frame));
+        if (frames.isEmpty()) {
+            return new byte[0];
+        }
+
+        var table = new ByteArrayOutputStream();
+        var out = new DataOutputStream(table);
+        out.writeShort(frames.size());
+        int previousOffset = -1;
+        List<String> previousLocals = null;
+        for (var entry : frames.entrySet()) {
+            int delta = entry.getKey() - previousOffset - 1;
+            var locals = getFrameLocals(entry.getValue().locals());
+            var stack = entry.getValue().stack();
+            boolean sameLocals = locals.equals(previousLocals) && delta < 64;
+
+            if (sameLocals && stack.isEmpty()) {
+                out.writeByte(SAME_FRAME + delta);
+            } else if (sameLocals && stack.size() == 1) {
+                out.writeByte(SAME_LOCALS_1_STACK_ITEM_FRAME + delta);
+                writeVerificationType(stack.get(0), offsets, out);
+            } else {
+                out.writeByte(FULL_FRAME);
+                out.writeShort(delta);
+                out.writeShort(locals.size());
+                for (var type : locals) {
+                    writeVerificationType(type, offsets, out);
+                }
+                out.writeShort(stack.size());
+                for (var type : stack) {
+                    writeVerificationType(type, offsets, out);
+                }
+            }
+
+            previousOffset = entry.getKey();
+            previousLocals = locals;
+        }
+        out.flush();
+        return table.toByteArray();
+    }
+
+    private static List<String> getFrameLocals(List<String> locals) {
+        // unusable locals at the end can be left out
+        int size = locals.size();
+        while (size > 0 && locals.get(size - 1).equals(FrameAnalysis.TOP)) {
+            size--;
+        }
+        return locals.subList(0, size);
+    }
+
+    private void writeVerificationType(String type, int[] offsets, DataOutputStream out) throws IOException {
+        switch (type.charAt(0)) {
+            case 'T' -> out.writeByte(ITEM_TOP);
+            case 'I' -> out.writeByte(ITEM_INTEGER);
+            case 'L' -> {
+                out.writeByte(ITEM_OBJECT);
+                out.writeShort(constantPool.classRef(type.substring(1, type.length() - 1)));
+            }
+            case '[' -> {
+                out.writeByte(ITEM_OBJECT);
+                out.writeShort(constantPool.classRef(type));
+            }
+            case 'N' -> {
+                // the offset of the new instruction that created the object
+                out.writeByte(ITEM_UNINITIALIZED);
+                out.writeShort(offsets[Integer.parseInt(type.substring(1))]);
+            }
+            default -> throw new RuntimeException("Unknown verification type '" + type + "'");
+        }
+    }
+
+    private byte[] assemble(JasminMethod method, int[] offsets) throws IOException {
+        var instructions = method.getInstructions();
+
+        // first pass: the offset of every instruction, to resolve labels
+        Map<String, Integer> labels = new HashMap<>();
+        int offset = 0;
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            offsets[i] = offset;
+            if (instruction.isLabel()) {
+                labels.put(instruction.getLabel(), offset);
+            }
+            offset += getSize(instruction);
+        }
+        if (offset > 0xffff) {
+            throw new RuntimeException(String.format("Code of method %s is too large (%d bytes)",
+                    method.getName(), offset));
+        }
+
+        var code = new ByteArrayOutputStream(offset);
+        var out = new DataOutputStream(code);
+        for (int i = 0; i < instructions.size(); i++) {
+            writeInstruction(instructions.get(i), offsets[i], labels, out);
+        }
+        out.flush();
+        return code.toByteArray();
+    }
+
+    private int getSize(JasminInstruction instruction) {
+        var opcode = instruction.opcode();
+        return switch (opcode.getFormat()) {
+            case NONE -> 1;
+            case INT -> switch (opcode) {
+                case ICONST -> 1;
+                case BIPUSH -> 2;
+                default -> 3;
+            };
+            case CONSTANT -> getConstantIndex(instruction.operands().get(0)) <= 0xff ? 2 : 3;
+            case LOCAL -> {
+                int local = instruction.getInt(0);
+                yield local <= 3 ? 1 : local <= 0xff ? 2 : 4;
+            }
+            case IINC -> isShortIinc(instruction) ? 3 : 6;
+            case LABEL -> instruction.isLabel() ? 0 : 3;
+            case ARRAY_TYPE -> 2;
+            case CLASS, FIELD, METHOD -> 3;
+        };
+    }
+
+    private static boolean isShortIinc(JasminInstruction instruction) {
+        int increment = instruction.getInt(1);
+        return instruction.getInt(0) <= 0xff && increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE;
+    }
+
+    private int getConstantIndex(Object constant) {
+        if (constant instanceof Integer value) {
+            return constantPool.integer(value);
+        }
+        var text = constant.toString();
+        try {
+            return constantPool.integer(Integer.parseInt(text));
+        } catch (NumberFormatException e) {
+            return constantPool.string(text.startsWith("\"") ? text.substring(1, text.length() - 1) : text);
+        }
+    }
+
+    private void writeInstruction(JasminInstruction instruction, int offset, Map<String, Integer> labels,
+                                  DataOutputStream out) throws IOException {
+        var opcode = instruction.opcode();
+        switch (opcode.getFormat()) {
+            case NONE -> out.writeByte(opcode.getCode());
+            case INT -> {
+                switch (opcode) {
+                    case ICONST -> out.writeByte(opcode.getCode() + instruction.getInt(0));
+                    case BIPUSH -> {
+                        out.writeByte(opcode.getCode());
+                        out.writeByte(instruction.getInt(0));
+                    }
+                    default -> {
+                        out.writeByte(opcode.getCode());
+                        out.writeShort(instruction.getInt(0));
+                    }
+                }
+            }
+            case CONSTANT -> {
+                int index = getConstantIndex(instruction.operands().get(0));
+                if (index <= 0xff) {
+                    out.writeByte(opcode.getCode());
+                    out.writeByte(index);
+                } else {
+                    out.writeByte(LDC_W);
+                    out.writeShort(index);
+                }
+            }
+            case LOCAL -> {
+                int local = instruction.getInt(0);
+                if (local <= 3) {
+                    out.writeByte(getShortFormCode(opcode) + local);
+                } else if (local <= 0xff) {
+                    out.writeByte(opcode.getCode());
+                    out.writeByte(local);
+                } else {
+                    out.writeByte(WIDE);
+                    out.writeByte(opcode.getCode());
+                    out.writeShort(local);
+                }
+            }
+            case IINC -> {
+                if (isShortIinc(instruction)) {
+                    out.writeByte(opcode.getCode());
+                    out.writeByte(instruction.getInt(0));
+                    out.writeByte(instruction.getInt(1));
+                } else {
+                    out.writeByte(WIDE);
+                    out.writeByte(opcode.getCode());
+                    out.writeShort(instruction.getInt(0));
+                    out.writeShort(instruction.getInt(1));
+                }
+            }
+            case LABEL -> {
+                if (instruction.isLabel()) {
+                    return;
+                }
+                var target = labels.get(instruction.getLabel());
+                if (target == null) {
+                    throw new RuntimeException("Undefined label '" + instruction.getLabel() + "'");
+                }
+                int jump = target - offset;
+                if (jump < Short.MIN_VALUE || jump > Short.MAX_VALUE) {
+                    throw new RuntimeException("Branch to '" + instruction.getLabel() + "' is too far");
+                }
+                out.writeByte(opcode.getCode());
+                out.writeShort(jump);
+            }
+            case ARRAY_TYPE -> {
+                out.writeByte(opcode.getCode());
+                out.writeByte(switch (instruction.getString(0)) {
+                    case "boolean" -> 4;
+                    case "int" -> 10;
+                    default -> throw new RuntimeException("Unknown array type '" + instruction.getString(0) + "'");
+                });
+            }
+            case CLASS -> {
+                out.writeByte(opcode.getCode());
+                out.writeShort(constantPool.classRef(instruction.getString(0)));
+            }
+            case FIELD -> {
+                out.writeByte(opcode.getCode());
+                out.writeShort(constantPool.fieldRef(instruction.getString(0), instruction.getString(1),
+                        instruction.getString(2)));
+            }
+            case METHOD -> {
+                out.writeByte(opcode.getCode());
+                out.writeShort(constantPool.methodRef(instruction.getString(0), instruction.getString(1),
+                        instruction.getString(2)));
+            }
+        }
+    }
+
+    private static int getShortFormCode(Opcode opcode) {
+        return switch (opcode) {
+            case ILOAD -> 0x1a;
+            case ALOAD -> 0x2a;
+            case ISTORE -> 0x3b;
+            case ASTORE -> 0x4b;
+            default -> throw new IllegalArgumentException(opcode.toString());
+        };
+    }
+
+    /**
+     * Constant pool entries, each added once and referenced by index.
+     */
+    private static class ConstantPool {
+
+        private static final int UTF8 = 1;
+        private static final int INTEGER = 3;
+        private static final int CLASS = 7;
+        private static final int STRING = 8;
+        private static final int FIELD_REF = 9;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(entries);
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private int count = 0;
+
+        int utf8(String value) {
+            return add("U" + value, () -> {
+                out.writeByte(UTF8);
+                out.writeUTF(value);
+            });
+        }
+
+        int integer(int value) {
+            return add("I" + value, () -> {
+                out.writeByte(INTEGER);
+                out.writeInt(value);
+            });
+        }
+
+        int string(String value) {
+            int utf8 = utf8(value);
+            return add("S" + value, () -> {
+                out.writeByte(STRING);
+                out.writeShort(utf8);
+            });
+        }
+
+        int classRef(String name) {
+            int utf8 = utf8(name);
+            return add("C" + name, () -> {
+                out.writeByte(CLASS);
+                out.writeShort(utf8);
+            });
+        }
+
+        int nameAndType(String name, String descriptor) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            return add("N" + name + " " + descriptor, () -> {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(FIELD_REF, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(METHOD_REF, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int classIndex = classRef(owner);
+            int nameAndTypeIndex = nameAndType(name, descriptor);
+            return add(tag + owner + "." + name + " " + descriptor, () -> {
+                out.writeByte(tag);
+                out.writeShort(classIndex);
+                out.writeShort(nameAndTypeIndex);
+            });
+        }
+
+        private int add(String key, Entry entry) {
+            var index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                entry.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // indexes start at 1
+            index = ++count;
+            if (index > 0xffff) {
+                throw new RuntimeException("Constant pool is too large");
+            }
+            indexes.put(key, index);
+            return index;
+        }
+
+        void write(DataOutputStream classFile) throws IOException {
+            classFile.writeShort(count + 1);
+            entries.writeTo(classFile);
+        }
+
+        @FunctionalInterface
+        private interface Entry {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the class names used in the OLLIR code to JVM internal names, using the imports of the class.
+ * <p>
+ * Imports are indexed once by their simple name, so each lookup is a single map access and only an import whose
+ * simple name is exactly the given name matches. Names that are not imported are used as they are. The index is
+ * never changed after construction, and the descriptors of the classes are kept in a concurrent map, so a resolver
+ * can be shared by the threads generating the methods.
+ */
+public class ClassNameResolver {
+
+    private final Map<String, String> internalNames = new HashMap<>();
+
+    private final Map<String, String> descriptors = new ConcurrentHashMap<>();
+
+    public ClassNameResolver(List<String> imports) {
+        for (var importName : imports) {
+            var simpleName = importName.substring(importName.lastIndexOf('.') + 1);
+            // OLLIR rejects two imports with the same simple name, keep the first one anyway
+            internalNames.putIfAbsent(simpleName, importName.replace('.', '/'));
+        }
+    }
+
+    public String getInternalName(String name) {
+        var internalName = internalNames.get(name);
+        return internalName != null ? internalName : name.replace('.', '/');
+    }
+
+    /**
+     * @return the descriptor of a reference to the class, e.g. {@code Lfoo/Bar;}
+     */
+    public String getDescriptor(String name) {
+        return descriptors.computeIfAbsent(name, className -> "L" + getInternalName(className) + ";");
+    }
+}
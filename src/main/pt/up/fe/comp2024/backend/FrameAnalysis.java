@@ -0,0 +1,273 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.*;
+
+/**
+ * Computes the verification frames of a method: the types of the locals and of the operand stack at every branch
+ * target, as required by the StackMapTable attribute.
+ * <p>
+ * Types are inferred from the code, starting from 'this' and the parameters, because after register allocation a
+ * slot may hold variables of different types. Stores of references carry the declared type of the variable, so
+ * paths that join keep it. Slots whose types disagree at a join become unusable (top).
+ * <p>
+ * Types are descriptors ({@code I}, {@code Ljava/lang/String;}, {@code [I}), {@link #TOP}, or {@code N<index>} for
+ * an object created by the {@code new} at that instruction index and not yet initialized.
+ */
+public class FrameAnalysis {
+
+    public static final String TOP = "T";
+    public static final String INT = "I";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String UNINITIALIZED = "N";
+
+    public record Frame(List<String> locals, List<String> stack) {
+    }
+
+    private record State(String[] locals, List<String> stack) {
+
+        State copy() {
+            return new State(locals.clone(), new ArrayList<>(stack));
+        }
+
+        String pop() {
+            return stack.remove(stack.size() - 1);
+        }
+
+        void pop(int count) {
+            for (int i = 0; i < count; i++) {
+                pop();
+            }
+        }
+
+        void push(String type) {
+            stack.add(type);
+        }
+    }
+
+    private final String className;
+    private final JasminMethod method;
+    private final List<JasminInstruction> instructions;
+    private final State[] states;
+
+    public FrameAnalysis(String className, JasminMethod method) {
+        this.className = className;
+        this.method = method;
+        this.instructions = method.getInstructions();
+        this.states = new State[instructions.size() + 1];
+    }
+
+    /**
+     * @return the frame at each instruction that needs one, by instruction index
+     */
+    public SortedMap<Integer, Frame> getFrames() {
+        solve();
+
+        Set<String> targets = new HashSet<>();
+        for (var instruction : instructions) {
+            if (instruction.opcode().isBranch()) {
+                targets.add(instruction.getLabel());
+            }
+        }
+
+        SortedMap<Integer, Frame> frames = new TreeMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            boolean isTarget = instruction.isLabel() && targets.contains(instruction.getLabel());
+            boolean afterJump = i > 0 && !instruction.isLabel() && isUnconditionalJump(instructions.get(i - 1));
+            if (isTarget || afterJump) {
+                // code nothing jumps to is verified with the frame at the start of the method
+                var state = states[i] != null ? states[i] : getEntryState();
+                frames.put(i, new Frame(List.of(state.locals()), List.copyOf(state.stack())));
+            }
+        }
+        return frames;
+    }
+
+    private void solve() {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i).isLabel()) {
+                labels.put(instructions.get(i).getLabel(), i);
+            }
+        }
+
+        var worklist = new ArrayDeque<Integer>();
+        states[0] = getEntryState();
+        worklist.push(0);
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            if (index == instructions.size()) {
+                continue;
+            }
+
+            var instruction = instructions.get(index);
+            var state = states[index].copy();
+            execute(index, instruction, state);
+
+            var opcode = instruction.opcode();
+            if (opcode.isBranch() && merge(labels.get(instruction.getLabel()), state)) {
+                worklist.push(labels.get(instruction.getLabel()));
+            }
+            if (!isUnconditionalJump(instruction) && merge(index + 1, state)) {
+                worklist.push(index + 1);
+            }
+        }
+    }
+
+    private static boolean isUnconditionalJump(JasminInstruction instruction) {
+        return instruction.opcode() == Opcode.GOTO || instruction.opcode().isReturn();
+    }
+
+    private State getEntryState() {
+        var locals = new String[method.getMaxLocals()];
+        Arrays.fill(locals, TOP);
+        int local = 0;
+        if (!method.isStatic()) {
+            locals[local++] = "L" + className + ";";
+        }
+        for (var type : getArgumentTypes(method.getDescriptor())) {
+            locals[local++] = type;
+        }
+        return new State(locals, new ArrayList<>());
+    }
+
+    /**
+     * @return true if the state at the index changed
+     */
+    private boolean merge(int index, State incoming) {
+        var current = states[index];
+        if (current == null) {
+            states[index] = incoming.copy();
+            return true;
+        }
+
+        if (current.stack().size() != incoming.stack().size()) {
+            throw new RuntimeException(String.format("Inconsistent operand stack at instruction %d of method %s",
+                    index, method.getName()));
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < current.locals().length; i++) {
+            if (!current.locals()[i].equals(incoming.locals()[i]) && !current.locals()[i].equals(TOP)) {
+                current.locals()[i] = TOP;
+                changed = true;
+            }
+        }
+        for (int i = 0; i < current.stack().size(); i++) {
+            var type = current.stack().get(i);
+            var other = incoming.stack().get(i);
+            if (type.equals(other) || type.equals(OBJECT)) {
+                continue;
+            }
+            if (!isReference(type) || !isReference(other)) {
+                throw new RuntimeException(String.format("Incompatible stack types %s and %s at instruction %d " +
+                        "of method %s", type, other, index, method.getName()));
+            }
+            current.stack().set(i, OBJECT);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static boolean isReference(String type) {
+        return type.startsWith("L") || type.startsWith("[");
+    }
+
+    private void execute(int index, JasminInstruction instruction, State state) {
+        switch (instruction.opcode()) {
+            case ICONST, BIPUSH, SIPUSH -> state.push(INT);
+            case LDC -> state.push(instruction.operands().get(0) instanceof Integer ? INT : "Ljava/lang/String;");
+            case ILOAD -> state.push(INT);
+            case ALOAD -> state.push(state.locals()[instruction.getInt(0)]);
+            case ISTORE -> {
+                state.pop();
+                state.locals()[instruction.getInt(0)] = INT;
+            }
+            case ASTORE -> {
+                var type = state.pop();
+                // objects not yet initialized keep their special type until the constructor runs
+                if (instruction.operands().size() > 1 && !type.startsWith(UNINITIALIZED)) {
+                    type = instruction.getString(1);
+                }
+                state.locals()[instruction.getInt(0)] = type;
+            }
+            case IINC, GOTO, RETURN, LABEL -> {
+            }
+            case IALOAD, BALOAD -> {
+                state.pop(2);
+                state.push(INT);
+            }
+            case AALOAD -> {
+                state.pop();
+                state.push(toVerificationType(state.pop().substring(1)));
+            }
+            case IASTORE, BASTORE, AASTORE -> state.pop(3);
+            case NEWARRAY -> {
+                state.pop();
+                state.push(instruction.getString(0).equals("boolean") ? "[Z" : "[I");
+            }
+            case ARRAYLENGTH, INEG -> {
+                state.pop();
+                state.push(INT);
+            }
+            case IADD, ISUB, IMUL, IDIV, IAND, IOR, IXOR -> {
+                state.pop(2);
+                state.push(INT);
+            }
+            case DUP -> state.push(state.stack().get(state.stack().size() - 1));
+            case POP, IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE, IRETURN, ARETURN -> state.pop();
+            case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE -> state.pop(2);
+            case NEW -> state.push(UNINITIALIZED + index);
+            case GETFIELD -> {
+                state.pop();
+                state.push(toVerificationType(instruction.getString(2)));
+            }
+            case PUTFIELD -> state.pop(2);
+            case INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC -> {
+                var descriptor = instruction.getString(2);
+                state.pop(getArgumentTypes(descriptor).size());
+                if (instruction.opcode() != Opcode.INVOKESTATIC) {
+                    var receiver = state.pop();
+                    if (instruction.getString(1).equals("<init>") && receiver.startsWith(UNINITIALIZED)) {
+                        initialize(state, receiver, "L" + instruction.getString(0) + ";");
+                    }
+                }
+                var returnType = descriptor.substring(descriptor.indexOf(')') + 1);
+                if (!returnType.equals("V")) {
+                    state.push(toVerificationType(returnType));
+                }
+            }
+        }
+    }
+
+    private static void initialize(State state, String uninitialized, String type) {
+        for (int i = 0; i < state.locals().length; i++) {
+            if (state.locals()[i].equals(uninitialized)) {
+                state.locals()[i] = type;
+            }
+        }
+        state.stack().replaceAll(value -> value.equals(uninitialized) ? type : value);
+    }
+
+    private static String toVerificationType(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'Z', 'B', 'C', 'S', 'I' -> INT;
+            default -> descriptor;
+        };
+    }
+
+    private static List<String> getArgumentTypes(String descriptor) {
+        List<String> types = new ArrayList<>();
+        int end = descriptor.indexOf(')');
+        int i = 1;
+        while (i < end) {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            types.add(toVerificationType(descriptor.substring(start, i)));
+        }
+        return types;
+    }
+}
@@ -3,6 +3,7 @@ package pt.up.fe.comp2024.backend;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
 
 public class JasminBackendImpl implements JasminBackend {
 
@@ -10,6 +11,14 @@ public class JasminBackendImpl implements JasminBackend {
     public JasminResult toJasmin(OllirResult ollirResult) {
 
         var jasminGenerator = new JasminGenerator(ollirResult);
+
+        // skip the text and the Jasmin assembler, the text is still available from the result for debugging
+        if (CompilerConfig.getClassFile(ollirResult.getConfig())) {
+            var jasminClass = jasminGenerator.buildClass();
+            var classBytes = new ClassFileWriter(jasminClass).write();
+            return new ClassFileResult(ollirResult, jasminClass, classBytes, jasminGenerator.getReports());
+        }
+
         var jasminCode = jasminGenerator.build();
 
         return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
@@ -0,0 +1,64 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory form of a generated class. The Jasmin text is produced from it in a single pass by {@link #toString()}.
+ */
+public class JasminClass {
+
+    public record Field(String access, String name, String descriptor) {
+    }
+
+    private final List<String> modifiers;
+    private final String name;
+    private final String superName;
+    private final List<Field> fields = new ArrayList<>();
+    private final List<JasminMethod> methods = new ArrayList<>();
+
+    public JasminClass(List<String> modifiers, String name, String superName) {
+        this.modifiers = modifiers;
+        this.name = name;
+        this.superName = superName;
+    }
+
+    public List<String> getModifiers() {
+        return modifiers;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    public List<JasminMethod> getMethods() {
+        return methods;
+    }
+
+    public void appendTo(StringBuilder code) {
+        code.append(".class ");
+        modifiers.forEach(modifier -> code.append(modifier).append(' '));
+        code.append(name).append("\n\n");
+        code.append(".super ").append(superName).append('\n');
+        for (var field : fields) {
+            code.append(".field ").append(field.access()).append(' ').append(field.name()).append(' ')
+                    .append(field.descriptor()).append('\n');
+        }
+        methods.forEach(method -> method.appendTo(code));
+    }
+
+    @Override
+    public String toString() {
+        var code = new StringBuilder();
+        appendTo(code);
+        return code.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.List;
+
+/**
+ * A single instruction of a {@link JasminMethod}, or a label when the opcode is {@link Opcode#LABEL}.
+ * <p>
+ * Operands follow the {@link Opcode.Format} of the opcode: ints for constants and local indexes, strings for labels,
+ * class names and descriptors.
+ */
+public record JasminInstruction(Opcode opcode, List<Object> operands) {
+
+    private static final String TAB = "   ";
+
+    public static JasminInstruction of(Opcode opcode, Object... operands) {
+        return new JasminInstruction(opcode, List.of(operands));
+    }
+
+    public static JasminInstruction label(String name) {
+        return of(Opcode.LABEL, name);
+    }
+
+    public boolean isLabel() {
+        return opcode == Opcode.LABEL;
+    }
+
+    public int getInt(int index) {
+        return (Integer) operands.get(index);
+    }
+
+    public String getString(int index) {
+        return (String) operands.get(index);
+    }
+
+    /**
+     * @return the label defined by a {@link Opcode#LABEL} or targeted by a branch
+     */
+    public String getLabel() {
+        return getString(0);
+    }
+
+    /**
+     * @return the change in operand stack size caused by the instruction, in slots
+     */
+    public int getStackEffect() {
+        if (opcode.getStackEffect() != Opcode.VARIABLE) {
+            return opcode.getStackEffect();
+        }
+
+        // invocations pop the arguments, and the receiver unless static, then push the result
+        String descriptor = getString(2);
+        int returnIndex = descriptor.indexOf(')') + 1;
+        int effect = getSlots(descriptor.substring(returnIndex)) - getArgumentSlots(descriptor, returnIndex - 1);
+        return opcode == Opcode.INVOKESTATIC ? effect : effect - 1;
+    }
+
+    private static int getArgumentSlots(String descriptor, int end) {
+        int slots = 0;
+        int i = 1;
+        while (i < end) {
+            char c = descriptor.charAt(i);
+            int start = i;
+            while (c == '[') {
+                c = descriptor.charAt(++i);
+            }
+            i = c == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            slots += getSlots(descriptor.substring(start, i));
+        }
+        return slots;
+    }
+
+    private static int getSlots(String type) {
+        return switch (type) {
+            case "V" -> 0;
+            case "J", "D" -> 2;
+            default -> 1;
+        };
+    }
+
+    public void appendTo(StringBuilder code) {
+        if (isLabel()) {
+            code.append(getLabel()).append(":\n");
+            return;
+        }
+
+        code.append(TAB);
+        switch (opcode.getFormat()) {
+            case NONE -> code.append(opcode.getMnemonic());
+            case INT -> {
+                if (opcode == Opcode.ICONST) {
+                    int value = getInt(0);
+                    code.append("iconst_").append(value == -1 ? "m1" : String.valueOf(value));
+                } else {
+                    code.append(opcode.getMnemonic()).append(' ').append(getInt(0));
+                }
+            }
+            case LOCAL -> {
+                // locals 0 to 3 have single byte forms
+                int local = getInt(0);
+                code.append(opcode.getMnemonic()).append(local <= 3 ? '_' : ' ').append(local);
+            }
+            case IINC -> code.append(opcode.getMnemonic()).append(' ').append(getInt(0)).append(' ').append(getInt(1));
+            case FIELD -> code.append(opcode.getMnemonic()).append(' ')
+                    .append(getString(0)).append('/').append(getString(1)).append(' ').append(getString(2));
+            case METHOD -> code.append(opcode.getMnemonic()).append(' ')
+                    .append(getString(0)).append('/').append(getString(1)).append(getString(2));
+            default -> code.append(opcode.getMnemonic()).append(' ').append(operands.get(0));
+        }
+        code.append('\n');
+    }
+
+    @Override
+    public String toString() {
+        var code = new StringBuilder();
+        appendTo(code);
+        return code.toString().strip();
+    }
+}
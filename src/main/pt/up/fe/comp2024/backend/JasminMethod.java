@@ -0,0 +1,82 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Code of a single method: its header, the instruction list and the stack and locals limits.
+ */
+public class JasminMethod {
+
+    private final List<String> modifiers;
+    private final String name;
+    private final String descriptor;
+    private List<JasminInstruction> instructions;
+    private int maxStack;
+    private int maxLocals;
+
+    public JasminMethod(List<String> modifiers, String name, String descriptor) {
+        this.modifiers = modifiers;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.instructions = new ArrayList<>();
+    }
+
+    public void add(Opcode opcode, Object... operands) {
+        instructions.add(JasminInstruction.of(opcode, operands));
+    }
+
+    public void addLabel(String label) {
+        instructions.add(JasminInstruction.label(label));
+    }
+
+    public List<String> getModifiers() {
+        return modifiers;
+    }
+
+    public boolean isStatic() {
+        return modifiers.contains("static");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public List<JasminInstruction> getInstructions() {
+        return instructions;
+    }
+
+    public void setInstructions(List<JasminInstruction> instructions) {
+        this.instructions = instructions;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public void setMaxStack(int maxStack) {
+        this.maxStack = maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public void setMaxLocals(int maxLocals) {
+        this.maxLocals = maxLocals;
+    }
+
+    public void appendTo(StringBuilder code) {
+        code.append("\n.method ");
+        modifiers.forEach(modifier -> code.append(modifier).append(' '));
+        code.append(name).append(descriptor).append('\n');
+        instructions.forEach(instruction -> instruction.appendTo(code));
+        code.append("   .limit stack ").append(maxStack).append('\n');
+        code.append("   .limit locals ").append(maxLocals).append('\n');
+        code.append(".end method\n");
+    }
+}
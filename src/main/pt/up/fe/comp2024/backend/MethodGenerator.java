@@ -0,0 +1,548 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.util.*;
+
+/**
+ * Generates the code of a single method.
+ * <p>
+ * Holds everything that changes while a method is generated, so that the methods of a class can be generated
+ * concurrently, each by its own MethodGenerator.
+ */
+class MethodGenerator {
+
+    private final JasminGenerator classGenerator;
+
+    private final Method method;
+
+    // the OLLIR instruction after the one being generated, if any
+    private Instruction nextInstruction;
+
+    private final Set<Integer> methodUsedLocals = new HashSet<>();
+
+    // labels created here must not clash with the labels of the OLLIR code
+    private int labelCount = 0;
+
+    private final BiConsumerClassMap<TreeNode, JasminMethod> generators;
+
+    private record Increment(Operand var, int amount) {
+    }
+
+    MethodGenerator(JasminGenerator classGenerator, Method method) {
+        this.classGenerator = classGenerator;
+        this.method = method;
+
+        this.generators = new BiConsumerClassMap<>();
+        generators.put(AssignInstruction.class, this::generateAssign);
+        generators.put(SingleOpInstruction.class, this::generateSingleOp);
+        generators.put(LiteralElement.class, this::generateLiteral);
+        generators.put(Operand.class, this::generateOperand);
+        generators.put(ArrayOperand.class, this::generateArrayOperand);
+        generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
+        generators.put(ReturnInstruction.class, this::generateReturn);
+        generators.put(PutFieldInstruction.class, this::generatePutField);
+        generators.put(GetFieldInstruction.class, this::generateGetField);
+        generators.put(CallInstruction.class, this::generateCallInstruction);
+        generators.put(SingleOpCondInstruction.class, this::generateSingleOpCondInstruction);
+        generators.put(GotoInstruction.class, this::generateGoto);
+        generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
+        generators.put(OpCondInstruction.class, this::generateOpCond);
+    }
+
+    private void generateOpCond(OpCondInstruction opCondInstruction, JasminMethod code) {
+        generateBranch(opCondInstruction.getCondition(), opCondInstruction.getLabel(), code);
+    }
+
+    /**
+     * Jumps to the label if the condition holds, comparing and branching in a single instruction when possible.
+     */
+    private void generateBranch(Instruction condition, String label, JasminMethod code) {
+        if (condition instanceof BinaryOpInstruction binaryOp) {
+            var compare = getCompareBranch(binaryOp.getOperation().getOpType());
+            if (compare != null) {
+                generateCompareBranch(binaryOp, compare, label, code);
+                return;
+            }
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            generators.accept(unaryOp.getOperand(), code);
+            code.add(Opcode.IFEQ, label);
+            return;
+        }
+
+        generators.accept(condition, code);
+        code.add(Opcode.IFNE, label);
+    }
+
+    /**
+     * Emits the comparison of the operands of a relational operation, using the forms against zero when one side
+     * is the literal 0.
+     */
+    private void generateCompareBranch(BinaryOpInstruction binaryOp, Opcode compare, String label, JasminMethod code) {
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+        if (isZero(right)) {
+            generators.accept(left, code);
+            code.add(getZeroBranch(compare), label);
+        } else if (isZero(left)) {
+            generators.accept(right, code);
+            code.add(getZeroBranch(swapOperands(compare)), label);
+        } else {
+            generators.accept(left, code);
+            generators.accept(right, code);
+            code.add(compare, label);
+        }
+    }
+
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && literal.getType().getTypeOfElement() == ElementType.INT32
+                && Integer.parseInt(literal.getLiteral()) == 0;
+    }
+
+    private static Opcode getCompareBranch(OperationType opType) {
+        return switch (opType) {
+            case LTH -> Opcode.IF_ICMPLT;
+            case LTE -> Opcode.IF_ICMPLE;
+            case GTH -> Opcode.IF_ICMPGT;
+            case GTE -> Opcode.IF_ICMPGE;
+            case EQ -> Opcode.IF_ICMPEQ;
+            case NEQ -> Opcode.IF_ICMPNE;
+            default -> null;
+        };
+    }
+
+    private static Opcode getZeroBranch(Opcode compare) {
+        return switch (compare) {
+            case IF_ICMPLT -> Opcode.IFLT;
+            case IF_ICMPLE -> Opcode.IFLE;
+            case IF_ICMPGT -> Opcode.IFGT;
+            case IF_ICMPGE -> Opcode.IFGE;
+            case IF_ICMPEQ -> Opcode.IFEQ;
+            case IF_ICMPNE -> Opcode.IFNE;
+            default -> throw new IllegalArgumentException(compare.toString());
+        };
+    }
+
+    /**
+     * @return the comparison that holds for (b, a) whenever the given one holds for (a, b)
+     */
+    private static Opcode swapOperands(Opcode compare) {
+        return switch (compare) {
+            case IF_ICMPLT -> Opcode.IF_ICMPGT;
+            case IF_ICMPLE -> Opcode.IF_ICMPGE;
+            case IF_ICMPGT -> Opcode.IF_ICMPLT;
+            case IF_ICMPGE -> Opcode.IF_ICMPLE;
+            default -> compare;
+        };
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOpInstruction, JasminMethod code) {
+        generators.accept(unaryOpInstruction.getOperand(), code);
+
+        switch (unaryOpInstruction.getOperation().getOpType()){
+            case NOTB -> {
+                code.add(Opcode.ICONST, 1);
+                code.add(Opcode.IXOR);
+            }
+            default -> throw new RuntimeException(
+                    String.format("Unary operator %s not implemented yet",
+                    unaryOpInstruction.getOperation().getOpType())
+            );
+        }
+    }
+
+    private void load(JasminMethod code, Opcode opcode, int reg) {
+        code.add(opcode, reg);
+        methodUsedLocals.add(reg);
+    }
+
+    private int getVirtualReg(String varName) {
+        return method.getVarTable().get(varName).getVirtualReg();
+    }
+
+
+    private void generateGoto(GotoInstruction gotoInstruction, JasminMethod code) {
+        code.add(Opcode.GOTO, gotoInstruction.getLabel());
+    }
+
+    private void generateSingleOpCondInstruction(SingleOpCondInstruction singleOpCondInstruction, JasminMethod code) {
+        generateBranch(singleOpCondInstruction.getCondition(), singleOpCondInstruction.getLabel(), code);
+    }
+
+    private void generateArrayOperand(ArrayOperand arrayOperand, JasminMethod code) {
+        load(code, Opcode.ALOAD, getVirtualReg(arrayOperand.getName()));
+
+        //TODO(luisd): multidimensional array
+        generators.accept(arrayOperand.getIndexOperands().get(0), code);
+
+        switch(((ArrayType) method.getVarTable().get(arrayOperand.getName()).getVarType())
+                .getElementType().getTypeOfElement()){
+            case INT32 -> code.add(Opcode.IALOAD);
+            case BOOLEAN -> code.add(Opcode.BALOAD);
+            default -> code.add(Opcode.AALOAD);
+        }
+    }
+
+    private void generateCallInstruction(CallInstruction callInstruction, JasminMethod code){
+        switch (callInstruction.getInvocationType()){
+            case arraylength -> {
+                load(code, Opcode.ALOAD, getVirtualReg(((Operand) callInstruction.getCaller()).getName()));
+                code.add(Opcode.ARRAYLENGTH);
+            }
+            case NEW -> {
+                var returnType = callInstruction.getReturnType();
+                if(returnType instanceof ClassType){
+                    code.add(Opcode.NEW, ((ClassType) returnType).getName());
+                    code.add(Opcode.DUP);
+                } else if(returnType instanceof ArrayType){
+                    callInstruction.getArguments().forEach((el) -> generators.accept(el, code));
+                    String jasminArrayType = getJasminArrayType((ArrayType) returnType);
+                    code.add(Opcode.NEWARRAY, jasminArrayType);
+                }
+
+            }
+            case invokespecial -> {
+                final Operand caller = (Operand) callInstruction.getCaller();
+                final ClassType classType = (ClassType) caller.getType();
+                load(code, Opcode.ALOAD, getVirtualReg(caller.getName()));
+                callInstruction.getArguments().forEach((el) -> generators.accept(el, code));
+                var methodName = ((LiteralElement) callInstruction.getMethodName()).getLiteral().replace("\"", "");
+
+                code.add(Opcode.INVOKESPECIAL, classGenerator.getClassName(classType.getName()), methodName,
+                        classGenerator.getMethodDescriptor(callInstruction.getArguments(), callInstruction.getReturnType()));
+            }
+            case invokestatic -> {
+                callInstruction.getArguments().forEach((el) -> generators.accept(el, code));
+
+                var className = classGenerator.getClassName(((Operand) callInstruction.getCaller()).getName());
+                var methodName = ((LiteralElement) callInstruction.getMethodName()).getLiteral().replace("\"", "");
+
+                code.add(Opcode.INVOKESTATIC, className, methodName,
+                        classGenerator.getMethodDescriptor(callInstruction.getArguments(), callInstruction.getReturnType()));
+
+            }
+            case invokevirtual -> {
+                var callerName = ((Operand) callInstruction.getCaller()).getName();
+                if (Objects.equals(callerName, "this")) {
+                    load(code, Opcode.ALOAD, 0);
+                }
+                else {
+                    load(code, Opcode.ALOAD, getVirtualReg(callerName));
+                }
+                var className = classGenerator.getClassName(((ClassType) callInstruction.getCaller().getType()).getName());
+                callInstruction.getArguments().forEach((el) -> generators.accept(el, code));
+
+                var methodName = ((LiteralElement) callInstruction.getMethodName()).getLiteral().replace("\"", "");
+                code.add(Opcode.INVOKEVIRTUAL, className, methodName,
+                        classGenerator.getMethodDescriptor(callInstruction.getArguments(), callInstruction.getReturnType()));
+
+            }
+        }
+    }
+
+    private static String getJasminArrayType(ArrayType returnType) {
+        var arrayType =  returnType.getElementType().getTypeOfElement();
+        String jasminArrayType = "";
+        if(arrayType == ElementType.INT32 ){
+            jasminArrayType = "int";
+        } else if (arrayType == ElementType.BOOLEAN){
+            jasminArrayType = "boolean";
+        } else {
+            throw new RuntimeException(String.format("Didn't handle new array type for %s", arrayType));
+        }
+        return jasminArrayType;
+    }
+
+    private void loadObject(Element object, JasminMethod code) {
+        var objectName = ((Operand) object).getName();
+        if (!Objects.equals(objectName, "this")){
+            load(code, Opcode.ALOAD, getVirtualReg(objectName));
+        } else {
+            load(code, Opcode.ALOAD, 0);
+        }
+    }
+
+    private void generateGetField(GetFieldInstruction getFieldInstruction, JasminMethod code){
+        var className = classGenerator.getClassName(method.getOllirClass().getClassName());
+        loadObject(getFieldInstruction.getOperands().get(0), code);
+
+        code.add(Opcode.GETFIELD, className,
+                classGenerator.generateValidFieldString(getFieldInstruction.getField().getName()),
+                classGenerator.getJasminTypeOfElement(getFieldInstruction.getField().getType()));
+    }
+
+    private void generatePutField(PutFieldInstruction putFieldInstruction, JasminMethod code){
+        var className = classGenerator.getClassName(method.getOllirClass().getClassName());
+        loadObject(putFieldInstruction.getOperands().get(0), code);
+
+        generators.accept(putFieldInstruction.getValue(), code);
+
+        code.add(Opcode.PUTFIELD, className,
+                classGenerator.generateValidFieldString(putFieldInstruction.getField().getName()),
+                classGenerator.getJasminTypeOfElement(putFieldInstruction.getField().getType()));
+    }
+
+    JasminMethod generate() {
+        // calculate modifier
+        var modifiers = new ArrayList<String>();
+        if (method.getMethodAccessModifier() != AccessModifier.DEFAULT) {
+            modifiers.add(method.getMethodAccessModifier().name().toLowerCase());
+        }
+        if (method.isStaticMethod()){
+            modifiers.add("static");
+        }
+
+        var code = new JasminMethod(modifiers, method.getMethodName(),
+                classGenerator.getMethodDescriptor(method.getParams(), method.getReturnType()));
+
+
+        Set<String> lastLabels = Set.of();
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+            nextInstruction = i + 1 < instructions.size() ? instructions.get(i + 1) : null;
+
+            var labels = method.getLabels(inst);
+            if(!labels.isEmpty()){
+                var differences = new ArrayList<>(labels);
+                differences.removeAll(lastLabels);
+                if(!differences.isEmpty()){
+                    differences.forEach(code::addLabel);
+                    lastLabels = new HashSet<>(labels);
+                }
+            }
+            generators.accept(inst, code);
+            if(inst instanceof CallInstruction){
+                var funcReturnType = ((CallInstruction) inst).getReturnType().getTypeOfElement();
+                var callType = ((CallInstruction) inst).getInvocationType();
+                if(!method.isConstructMethod() && (!(funcReturnType == ElementType.VOID) || callType == CallType.invokespecial)){
+                    code.add(Opcode.POP);
+                }
+            }
+
+        }
+        // Add limits
+        // the JVM stores 'this' and the arguments in the first slots even when they are never read
+        var argumentSlots = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+        var maxLocalVar = methodUsedLocals.stream().max(Integer::compareTo);
+        code.setMaxLocals(Math.max(maxLocalVar.map(local -> local + 1).orElse(0), argumentSlots));
+
+        return code;
+    }
+
+    private void generateAssign(AssignInstruction assign, JasminMethod code) {
+        // store value in the stack in destination
+        var lhs = assign.getDest();
+
+        if(lhs instanceof ArrayOperand operand){
+            load(code, Opcode.ALOAD, getVirtualReg(operand.getName()));
+            //TODO(luisd): multidimensional lists
+            generators.accept(operand.getIndexOperands().get(0), code);
+            generators.accept(assign.getRhs(), code);
+
+            switch(((ArrayType) method.getVarTable().get(operand.getName()).getVarType())
+                    .getElementType().getTypeOfElement()){
+                case INT32 -> code.add(Opcode.IASTORE);
+                case BOOLEAN -> code.add(Opcode.BASTORE);
+                default -> code.add(Opcode.AASTORE);
+            }
+
+            return;
+        }
+
+        if (!(lhs instanceof Operand operand)) {
+            throw new NotImplementedException(lhs.getClass());
+        }
+
+        // get register
+        var reg = getVirtualReg(operand.getName());
+        var type = method.getVarTable().get(operand.getName()).getVarType();
+
+        // generate code for loading what's on the right
+        var increment = getIncrement(operand, assign.getRhs());
+        if (increment != null) {
+            var incrementedReg = getVirtualReg(increment.var().getName());
+            code.add(Opcode.IINC, incrementedReg, increment.amount());
+            methodUsedLocals.add(incrementedReg);
+            if (incrementedReg == reg) {
+                return;
+            }
+            load(code, Opcode.ILOAD, incrementedReg);
+        } else {
+            generators.accept(assign.getRhs(), code);
+        }
+
+        methodUsedLocals.add(reg);
+        switch (type.getTypeOfElement()){
+            case INT32, BOOLEAN -> code.add(Opcode.ISTORE, reg);
+            // the declared type is kept for the verification frames of class files
+            case CLASS, OBJECTREF, ARRAYREF -> code.add(Opcode.ASTORE, reg, classGenerator.getJasminTypeOfElement(type));
+            default -> throw new RuntimeException(
+                    String.format("Assign type %s not handled", type.getTypeOfElement().name())
+            );
+        }
+    }
+
+    /**
+     * Matches {@code dest := x + c} (or {@code x - c}) where the sum may be computed in place with iinc: either dest
+     * is x itself, or the very next instruction is {@code x := dest}, so x is overwritten with the same value anyway.
+     *
+     * @return the variable and the amount to increment it by, or null if iinc cannot be used
+     */
+    private Increment getIncrement(Operand dest, Instruction rhs) {
+        if (!(rhs instanceof BinaryOpInstruction binaryOp)) {
+            return null;
+        }
+
+        var opType = binaryOp.getOperation().getOpType();
+        Element var;
+        Element literal;
+        if (opType == OperationType.ADD && binaryOp.getLeftOperand().isLiteral()) {
+            var = binaryOp.getRightOperand();
+            literal = binaryOp.getLeftOperand();
+        } else if (opType == OperationType.ADD || opType == OperationType.SUB) {
+            var = binaryOp.getLeftOperand();
+            literal = binaryOp.getRightOperand();
+        } else {
+            return null;
+        }
+
+        if (!(var instanceof Operand varOperand) || var instanceof ArrayOperand || var.isLiteral()
+                || !(literal instanceof LiteralElement literalElement)
+                || var.getType().getTypeOfElement() != ElementType.INT32) {
+            return null;
+        }
+
+        int amount = Integer.parseInt(literalElement.getLiteral());
+        if (opType == OperationType.SUB) {
+            amount = -amount;
+        }
+        if (amount < Byte.MIN_VALUE || amount > Byte.MAX_VALUE) {
+            return null;
+        }
+
+        if (varOperand.getName().equals(dest.getName()) || isCopy(nextInstruction, dest, varOperand)) {
+            return new Increment(varOperand, amount);
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the instruction is {@code dest := source}
+     */
+    private static boolean isCopy(Instruction instruction, Operand source, Operand dest) {
+        return instruction instanceof AssignInstruction assign
+                && assign.getDest() instanceof Operand destOperand && !(destOperand instanceof ArrayOperand)
+                && destOperand.getName().equals(dest.getName())
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand sourceOperand && !sourceOperand.isLiteral()
+                && !(sourceOperand instanceof ArrayOperand)
+                && sourceOperand.getName().equals(source.getName());
+    }
+
+    private void generateSingleOp(SingleOpInstruction singleOp, JasminMethod code) {
+        generators.accept(singleOp.getSingleOperand(), code);
+    }
+
+    private void generateLiteral(LiteralElement literal, JasminMethod code) {
+        var literalType = literal.getType().getTypeOfElement();
+        if(literalType == ElementType.INT32 || literalType == ElementType.BOOLEAN){
+            pushInt(Integer.parseInt(literal.getLiteral()), code);
+            return;
+        }
+        code.add(Opcode.LDC, literal.getLiteral());
+    }
+
+    private static void pushInt(int constant, JasminMethod code) {
+        if(-1 <= constant && constant <= 5){
+            code.add(Opcode.ICONST, constant);
+        } else if(Byte.MIN_VALUE <= constant && constant <= Byte.MAX_VALUE){
+            code.add(Opcode.BIPUSH, constant);
+        } else if(Short.MIN_VALUE <= constant && constant <= Short.MAX_VALUE){
+            code.add(Opcode.SIPUSH, constant);
+        } else {
+            code.add(Opcode.LDC, constant);
+        }
+    }
+
+    private void generateOperand(Operand operand, JasminMethod code) {
+        if(operand.getType().getTypeOfElement() == ElementType.THIS){
+            load(code, Opcode.ALOAD, 0);
+            return;
+        }
+        // get register
+        var reg = getVirtualReg(operand.getName());
+        var opcode = switch (operand.getType().getTypeOfElement()){
+            case INT32,BOOLEAN -> Opcode.ILOAD;
+            case OBJECTREF,CLASS,ARRAYREF -> Opcode.ALOAD;
+            default ->
+                    throw new NotImplementedException(
+                            String.format("Operand %s is not implemented",
+                                    operand.getType().getTypeOfElement().name()));
+        };
+        load(code, opcode, reg);
+    }
+
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, JasminMethod code) {
+        var compare = getCompareBranch(binaryOp.getOperation().getOpType());
+        if (compare != null) {
+            generateComparison(binaryOp, compare, code);
+            return;
+        }
+
+        // load values on the left and on the right
+        generators.accept(binaryOp.getLeftOperand(), code);
+        generators.accept(binaryOp.getRightOperand(), code);
+
+        // apply operation
+        switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> code.add(Opcode.IADD);
+            case MUL -> code.add(Opcode.IMUL);
+            // TODO(luisd): test div and sub due to not being commutative
+            case DIV -> code.add(Opcode.IDIV);
+            case SUB -> code.add(Opcode.ISUB);
+            case AND, ANDB -> code.add(Opcode.IAND);
+            case OR, ORB -> code.add(Opcode.IOR);
+            default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
+        }
+    }
+
+    /**
+     * Materializes the result of a comparison as 0 or 1.
+     */
+    private void generateComparison(BinaryOpInstruction binaryOp, Opcode compare, JasminMethod code) {
+        var elseLabel = newLabel();
+        var endLabel = newLabel();
+        generateCompareBranch(binaryOp, compare.negate(), elseLabel, code);
+        code.add(Opcode.ICONST, 1);
+        code.add(Opcode.GOTO, endLabel);
+        code.addLabel(elseLabel);
+        code.add(Opcode.ICONST, 0);
+        code.addLabel(endLabel);
+    }
+
+    private String newLabel() {
+        return "cmp_" + labelCount++;
+    }
+
+    private void generateReturn(ReturnInstruction returnInst, JasminMethod code) {
+        switch (returnInst.getReturnType().getTypeOfElement()){
+            case VOID -> code.add(Opcode.RETURN);
+            case INT32, BOOLEAN -> {
+                generators.accept(returnInst.getOperand(), code);
+                code.add(Opcode.IRETURN);
+            }
+            case CLASS, OBJECTREF, ARRAYREF -> {
+                generators.accept(returnInst.getOperand(), code);
+                code.add(Opcode.ARETURN);
+            }
+            default -> throw new RuntimeException(
+                    String.format("Return type %s not handled", returnInst.getReturnType().getTypeOfElement().name()));
+        }
+    }
+}
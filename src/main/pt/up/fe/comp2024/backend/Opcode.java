@@ -0,0 +1,170 @@
+package pt.up.fe.comp2024.backend;
+
+/**
+ * JVM instructions emitted by the backend, plus the {@link #LABEL} pseudo-instruction that marks a branch target.
+ */
+public enum Opcode {
+
+    // constants
+    ICONST(Format.INT, 1, 0x03),
+    BIPUSH(Format.INT, 1, 0x10),
+    SIPUSH(Format.INT, 1, 0x11),
+    LDC(Format.CONSTANT, 1, 0x12),
+
+    // locals
+    ILOAD(Format.LOCAL, 1, 0x15),
+    ALOAD(Format.LOCAL, 1, 0x19),
+    ISTORE(Format.LOCAL, -1, 0x36),
+    ASTORE(Format.LOCAL, -1, 0x3a),
+    IINC(Format.IINC, 0, 0x84),
+
+    // arrays
+    IALOAD(Format.NONE, -1, 0x2e),
+    BALOAD(Format.NONE, -1, 0x33),
+    AALOAD(Format.NONE, -1, 0x32),
+    IASTORE(Format.NONE, -3, 0x4f),
+    BASTORE(Format.NONE, -3, 0x54),
+    AASTORE(Format.NONE, -3, 0x53),
+    NEWARRAY(Format.ARRAY_TYPE, 0, 0xbc),
+    ARRAYLENGTH(Format.NONE, 0, 0xbe),
+
+    // arithmetic
+    IADD(Format.NONE, -1, 0x60),
+    ISUB(Format.NONE, -1, 0x64),
+    IMUL(Format.NONE, -1, 0x68),
+    IDIV(Format.NONE, -1, 0x6c),
+    INEG(Format.NONE, 0, 0x74),
+    IAND(Format.NONE, -1, 0x7e),
+    IOR(Format.NONE, -1, 0x80),
+    IXOR(Format.NONE, -1, 0x82),
+
+    // stack
+    DUP(Format.NONE, 1, 0x59),
+    POP(Format.NONE, -1, 0x57),
+
+    // control flow
+    IFEQ(Format.LABEL, -1, 0x99),
+    IFNE(Format.LABEL, -1, 0x9a),
+    IFLT(Format.LABEL, -1, 0x9b),
+    IFGE(Format.LABEL, -1, 0x9c),
+    IFGT(Format.LABEL, -1, 0x9d),
+    IFLE(Format.LABEL, -1, 0x9e),
+    IF_ICMPEQ(Format.LABEL, -2, 0x9f),
+    IF_ICMPNE(Format.LABEL, -2, 0xa0),
+    IF_ICMPLT(Format.LABEL, -2, 0xa1),
+    IF_ICMPGE(Format.LABEL, -2, 0xa2),
+    IF_ICMPGT(Format.LABEL, -2, 0xa3),
+    IF_ICMPLE(Format.LABEL, -2, 0xa4),
+    GOTO(Format.LABEL, 0, 0xa7),
+    IRETURN(Format.NONE, -1, 0xac),
+    ARETURN(Format.NONE, -1, 0xb0),
+    RETURN(Format.NONE, 0, 0xb1),
+
+    // objects
+    NEW(Format.CLASS, 1, 0xbb),
+    GETFIELD(Format.FIELD, 0, 0xb4),
+    PUTFIELD(Format.FIELD, -2, 0xb5),
+    INVOKEVIRTUAL(Format.METHOD, Opcode.VARIABLE, 0xb6),
+    INVOKESPECIAL(Format.METHOD, Opcode.VARIABLE, 0xb7),
+    INVOKESTATIC(Format.METHOD, Opcode.VARIABLE, 0xb8),
+
+    LABEL(Format.LABEL, 0, -1);
+
+    /**
+     * Shape of the operands of an instruction.
+     */
+    public enum Format {
+        /** no operands */
+        NONE,
+        /** an int constant */
+        INT,
+        /** a constant pool value */
+        CONSTANT,
+        /** a local variable index */
+        LOCAL,
+        /** a local variable index and an int increment */
+        IINC,
+        /** a label name */
+        LABEL,
+        /** an internal class name */
+        CLASS,
+        /** a primitive array element type (int, boolean) */
+        ARRAY_TYPE,
+        /** owner internal name, field name and field descriptor */
+        FIELD,
+        /** owner internal name, method name and method descriptor */
+        METHOD
+    }
+
+    /**
+     * Stack effect of instructions whose effect depends on their operands (method invocations).
+     */
+    public static final int VARIABLE = Integer.MIN_VALUE;
+
+    private final Format format;
+    private final int stackEffect;
+    private final int code;
+    private final String mnemonic;
+
+    Opcode(Format format, int stackEffect, int code) {
+        this.format = format;
+        this.stackEffect = stackEffect;
+        this.code = code;
+        this.mnemonic = name().toLowerCase();
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the change in operand stack size, in slots, or {@link #VARIABLE}
+     */
+    public int getStackEffect() {
+        return stackEffect;
+    }
+
+    /**
+     * @return the JVM opcode of the general form of the instruction (e.g. iload, not iload_1), -1 for labels
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    public boolean isBranch() {
+        return format == Format.LABEL && this != LABEL;
+    }
+
+    public boolean isConditionalBranch() {
+        return isBranch() && this != GOTO;
+    }
+
+    /**
+     * @return the conditional branch taken exactly when this one is not
+     */
+    public Opcode negate() {
+        return switch (this) {
+            case IFEQ -> IFNE;
+            case IFNE -> IFEQ;
+            case IFLT -> IFGE;
+            case IFGE -> IFLT;
+            case IFGT -> IFLE;
+            case IFLE -> IFGT;
+            case IF_ICMPEQ -> IF_ICMPNE;
+            case IF_ICMPNE -> IF_ICMPEQ;
+            case IF_ICMPLT -> IF_ICMPGE;
+            case IF_ICMPGE -> IF_ICMPLT;
+            case IF_ICMPGT -> IF_ICMPLE;
+            case IF_ICMPLE -> IF_ICMPGT;
+            default -> throw new IllegalArgumentException(this + " is not a conditional branch");
+        };
+    }
+
+    public boolean isReturn() {
+        return this == IRETURN || this == ARETURN || this == RETURN;
+    }
+}
@@ -0,0 +1,157 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.*;
+
+/**
+ * Peephole optimizer over the instruction list of a method.
+ * <p>
+ * Each round makes a single pass: instructions are appended to the output one at a time and, after each one, the
+ * rules are tried on a window at the end of the output. A rewrite replaces the window in place, so its result can
+ * match again together with the instructions before it. Rounds repeat until nothing changes. Some rewrites only
+ * become possible after labels stop being referenced, which a round only learns at its start.
+ */
+public class PeepholeOptimizer {
+
+    /**
+     * A rewrite of a fixed number of consecutive instructions.
+     */
+    private record Rule(int size, Rewrite rewrite) {
+    }
+
+    @FunctionalInterface
+    private interface Rewrite {
+        /**
+         * @param window  the last instructions of the output, as many as the size of the rule
+         * @param targets labels referenced by some branch
+         * @return the instructions replacing the window, or null if the rule does not apply
+         */
+        List<JasminInstruction> apply(List<JasminInstruction> window, Set<String> targets);
+    }
+
+    private static final List<Rule> RULES = List.of(
+            // a label no branch jumps to
+            new Rule(1, (w, targets) -> w.get(0).isLabel() && !targets.contains(w.get(0).getLabel())
+                    ? List.of() : null),
+            // iload x; istore x
+            new Rule(2, (w, targets) -> isLoad(w.get(0)) && w.get(1).opcode() == getStore(w.get(0).opcode())
+                    && sameLocal(w.get(0), w.get(1))
+                    ? List.of() : null),
+            // istore x; iload x -> dup; istore x
+            new Rule(2, (w, targets) -> isStore(w.get(0)) && w.get(0).opcode() == getStore(w.get(1).opcode())
+                    && sameLocal(w.get(0), w.get(1))
+                    ? List.of(JasminInstruction.of(Opcode.DUP), w.get(0)) : null),
+            // dup; istore x; istore x -> istore x, a copy between variables that share a local
+            new Rule(3, (w, targets) -> w.get(0).opcode() == Opcode.DUP && isStore(w.get(1))
+                    && w.get(2).opcode() == w.get(1).opcode() && sameLocal(w.get(1), w.get(2))
+                    ? List.of(w.get(2)) : null),
+            // values pushed and immediately discarded
+            new Rule(2, (w, targets) -> isPush(w.get(0)) && w.get(1).opcode() == Opcode.POP
+                    ? List.of() : null),
+            // x + 0, x - 0, x * 1, x / 1
+            new Rule(2, (w, targets) -> isIdentity(w.get(0), w.get(1)) ? List.of() : null),
+            // code after an unconditional jump is unreachable up to the next label
+            new Rule(2, (w, targets) -> isUnconditionalJump(w.get(0)) && !w.get(1).isLabel()
+                    ? List.of(w.get(0)) : null),
+            // goto L; L:
+            new Rule(2, (w, targets) -> w.get(0).opcode() == Opcode.GOTO && w.get(1).isLabel()
+                    && w.get(0).getLabel().equals(w.get(1).getLabel())
+                    ? List.of(w.get(1)) : null),
+            // if<cond> L1; goto L2; L1: -> if<!cond> L2; L1:
+            new Rule(3, (w, targets) -> w.get(0).opcode().isConditionalBranch() && w.get(1).opcode() == Opcode.GOTO
+                    && w.get(2).isLabel() && w.get(0).getLabel().equals(w.get(2).getLabel())
+                    ? List.of(JasminInstruction.of(w.get(0).opcode().negate(), w.get(1).getLabel()), w.get(2)) : null)
+    );
+
+    private PeepholeOptimizer() {
+    }
+
+    public static void optimize(JasminMethod method) {
+        var code = method.getInstructions();
+        boolean changed = true;
+        while (changed) {
+            var optimizedCode = optimizeRound(code);
+            changed = !optimizedCode.equals(code);
+            code = optimizedCode;
+        }
+        method.setInstructions(code);
+    }
+
+    private static List<JasminInstruction> optimizeRound(List<JasminInstruction> code) {
+        Set<String> targets = new HashSet<>();
+        for (var instruction : code) {
+            if (instruction.opcode().isBranch()) {
+                targets.add(instruction.getLabel());
+            }
+        }
+
+        var output = new ArrayList<JasminInstruction>(code.size());
+        for (var instruction : code) {
+            output.add(instruction);
+            rewriteTail(output, targets);
+        }
+        return output;
+    }
+
+    private static void rewriteTail(List<JasminInstruction> output, Set<String> targets) {
+        // a rewrite may enable another one on the instructions before it
+        boolean rewritten = true;
+        while (rewritten) {
+            rewritten = false;
+            for (var rule : RULES) {
+                if (rule.size() > output.size()) {
+                    continue;
+                }
+                var window = output.subList(output.size() - rule.size(), output.size());
+                var replacement = rule.rewrite().apply(window, targets);
+                if (replacement != null) {
+                    window.clear();
+                    output.addAll(replacement);
+                    rewritten = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean isLoad(JasminInstruction instruction) {
+        return instruction.opcode() == Opcode.ILOAD || instruction.opcode() == Opcode.ALOAD;
+    }
+
+    private static boolean isStore(JasminInstruction instruction) {
+        return instruction.opcode() == Opcode.ISTORE || instruction.opcode() == Opcode.ASTORE;
+    }
+
+    private static Opcode getStore(Opcode load) {
+        return switch (load) {
+            case ILOAD -> Opcode.ISTORE;
+            case ALOAD -> Opcode.ASTORE;
+            default -> null;
+        };
+    }
+
+    private static boolean sameLocal(JasminInstruction first, JasminInstruction second) {
+        return first.getInt(0) == second.getInt(0);
+    }
+
+    private static boolean isPush(JasminInstruction instruction) {
+        return switch (instruction.opcode()) {
+            case ICONST, BIPUSH, SIPUSH, LDC, ILOAD, ALOAD, DUP -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isIdentity(JasminInstruction constant, JasminInstruction operation) {
+        if (constant.opcode() != Opcode.ICONST) {
+            return false;
+        }
+        return switch (operation.opcode()) {
+            case IADD, ISUB -> constant.getInt(0) == 0;
+            case IMUL, IDIV -> constant.getInt(0) == 1;
+            default -> false;
+        };
+    }
+
+    private static boolean isUnconditionalJump(JasminInstruction instruction) {
+        return instruction.opcode() == Opcode.GOTO || instruction.opcode().isReturn();
+    }
+}
@@ -0,0 +1,76 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the maximum operand stack size of a method by abstract interpretation of the stack effect of each
+ * instruction, following every branch.
+ * <p>
+ * The JVM requires the stack to have the same size whenever an instruction is reached, so each instruction is
+ * visited once and a different size on another path is reported as an error.
+ */
+public class StackAnalysis {
+
+    private StackAnalysis() {
+    }
+
+    public static int getMaxStack(JasminMethod method) {
+        List<JasminInstruction> instructions = method.getInstructions();
+
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i).isLabel()) {
+                labels.put(instructions.get(i).getLabel(), i);
+            }
+        }
+
+        int[] depths = new int[instructions.size()];
+        Arrays.fill(depths, -1);
+        var worklist = new ArrayDeque<Integer>();
+        int maxStack = 0;
+        if (!instructions.isEmpty()) {
+            depths[0] = 0;
+            worklist.push(0);
+        }
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            var instruction = instructions.get(index);
+            int depth = depths[index] + instruction.getStackEffect();
+            if (depth < 0) {
+                throw new RuntimeException(String.format("Operand stack underflow at '%s' in method %s",
+                        instruction, method.getName()));
+            }
+            maxStack = Math.max(maxStack, depth);
+
+            var opcode = instruction.opcode();
+            if (opcode.isBranch()) {
+                var target = labels.get(instruction.getLabel());
+                if (target == null) {
+                    throw new RuntimeException(String.format("Undefined label '%s' in method %s",
+                            instruction.getLabel(), method.getName()));
+                }
+                visit(method, depths, worklist, target, depth);
+            }
+            if (opcode != Opcode.GOTO && !opcode.isReturn() && index + 1 < instructions.size()) {
+                visit(method, depths, worklist, index + 1, depth);
+            }
+        }
+
+        return maxStack;
+    }
+
+    private static void visit(JasminMethod method, int[] depths, ArrayDeque<Integer> worklist, int index, int depth) {
+        if (depths[index] == -1) {
+            depths[index] = depth;
+            worklist.push(index);
+        } else if (depths[index] != depth) {
+            throw new RuntimeException(String.format("Inconsistent operand stack size (%d and %d) at instruction %d " +
+                    "of method %s", depths[index], depth, index, method.getName()));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+
+import java.util.List;
+
+/**
+ * JVM descriptors of OLLIR types and method signatures.
+ * <p>
+ * Descriptors are built on every call and not cached. OLLIR creates a new {@link Type} for every element, so there is
+ * no identity to key a cache on, and appending to a single builder is several times faster than looking descriptors
+ * up by the shape of their types. Class descriptors come from the {@link ClassNameResolver}.
+ */
+public class TypeDescriptors {
+
+    private final ClassNameResolver classNames;
+
+    public TypeDescriptors(ClassNameResolver classNames) {
+        this.classNames = classNames;
+    }
+
+    public String getTypeDescriptor(Type type) {
+        if (type instanceof ArrayType) {
+            return appendTypeDescriptor(new StringBuilder(), type).toString();
+        }
+        return getElementDescriptor(type);
+    }
+
+    /**
+     * @param parameters the arguments of a call or the parameters of a method, only their types are used
+     */
+    public String getMethodDescriptor(List<Element> parameters, Type returnType) {
+        var descriptor = new StringBuilder("(");
+        for (var parameter : parameters) {
+            appendTypeDescriptor(descriptor, parameter.getType());
+        }
+        descriptor.append(')');
+        return appendTypeDescriptor(descriptor, returnType).toString();
+    }
+
+    private StringBuilder appendTypeDescriptor(StringBuilder descriptor, Type type) {
+        if (type instanceof ArrayType arrayType) {
+            for (int i = 0; i < arrayType.getNumDimensions(); i++) {
+                descriptor.append('[');
+            }
+            type = arrayType.getElementType();
+        }
+        return descriptor.append(getElementDescriptor(type));
+    }
+
+    private String getElementDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            case CLASS, OBJECTREF -> classNames.getDescriptor(((ClassType) type).getName());
+            default -> throw new RuntimeException(
+                    String.format("Jasmin type not handled: %s", type.getTypeOfElement().name())
+            );
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Helpers for fixed-size bitsets stored as {@code long[]}, used by the dataflow analyses.
+ */
+public class BitSets {
+
+    private BitSets() {
+    }
+
+    public static long[] create(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    public static long[] full(int size) {
+        var bits = create(size);
+        Arrays.fill(bits, -1L);
+        if ((size & 63) != 0) {
+            bits[bits.length - 1] = (1L << size) - 1;
+        }
+        return bits;
+    }
+
+    public static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    public static void clear(long[] bits) {
+        Arrays.fill(bits, 0L);
+    }
+
+    public static void union(long[] dest, long[] src) {
+        for (int i = 0; i < dest.length; i++) {
+            dest[i] |= src[i];
+        }
+    }
+
+    public static void intersect(long[] dest, long[] src) {
+        for (int i = 0; i < dest.length; i++) {
+            dest[i] &= src[i];
+        }
+    }
+
+    /**
+     * Computes {@code dest = gen | (src & ~kill)}.
+     *
+     * @return true if dest changed
+     */
+    public static boolean transfer(long[] dest, long[] src, long[] gen, long[] kill) {
+        boolean changed = false;
+        for (int i = 0; i < dest.length; i++) {
+            long value = gen[i] | (src[i] & ~kill[i]);
+            if (value != dest[i]) {
+                dest[i] = value;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public static void forEach(long[] bits, IntConsumer action) {
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+
+import java.util.*;
+
+/**
+ * Generic gen/kill dataflow analysis over the OLLIR control-flow graph of a method.
+ * <p>
+ * Facts are numbered densely by subclasses and the IN/OUT sets of each instruction are kept as {@code long[]}
+ * bitsets, so memory grows with instructions times facts / 64. The solver is a worklist seeded in reverse post-order
+ * (forward problems) or post-order (backward problems). IN is always the set before the instruction and OUT the set
+ * after it, whatever the direction.
+ * <p>
+ * The CFG of the method must have been built ({@link Method#buildCFG()}) before calling {@link #solve()}.
+ */
+public abstract class DataflowAnalysis {
+
+    public enum Direction {
+        FORWARD,
+        BACKWARD
+    }
+
+    public enum Meet {
+        UNION,
+        INTERSECTION
+    }
+
+    protected final Method method;
+
+    private final Direction direction;
+    private final Meet meet;
+
+    private List<Instruction> instructions;
+    private long[][] gen;
+    private long[][] kill;
+    private long[][] in;
+    private long[][] out;
+
+    protected DataflowAnalysis(Method method, Direction direction, Meet meet) {
+        this.method = method;
+        this.direction = direction;
+        this.meet = meet;
+    }
+
+    /**
+     * @return the number of facts tracked by the analysis
+     */
+    protected abstract int getDomainSize();
+
+    /**
+     * Fills the gen and kill sets of the given instruction.
+     */
+    protected abstract void initGenKill(Instruction instruction, long[] gen, long[] kill);
+
+    /**
+     * Facts holding at the method entry (forward) or exit (backward). Empty by default.
+     */
+    protected long[] getBoundary() {
+        return BitSets.create(getDomainSize());
+    }
+
+    public DataflowAnalysis solve() {
+        int domainSize = getDomainSize();
+        instructions = method.getInstructions();
+        int size = instructions.size();
+
+        gen = new long[size][];
+        kill = new long[size][];
+        in = new long[size][];
+        out = new long[size][];
+        for (int i = 0; i < size; i++) {
+            gen[i] = BitSets.create(domainSize);
+            kill[i] = BitSets.create(domainSize);
+            initGenKill(instructions.get(i), gen[i], kill[i]);
+            in[i] = meet == Meet.UNION ? BitSets.create(domainSize) : BitSets.full(domainSize);
+            out[i] = meet == Meet.UNION ? BitSets.create(domainSize) : BitSets.full(domainSize);
+        }
+
+        var order = reversePostOrder(method);
+        if (direction == Direction.BACKWARD) {
+            Collections.reverse(order);
+        }
+
+        var workList = new ArrayDeque<Integer>(size);
+        var inWorkList = new boolean[size];
+        for (var instruction : order) {
+            workList.add(indexOf(instruction));
+            inWorkList[indexOf(instruction)] = true;
+        }
+
+        var boundary = getBoundary();
+        var joined = BitSets.create(domainSize);
+        while (!workList.isEmpty()) {
+            int index = workList.poll();
+            inWorkList[index] = false;
+            var instruction = instructions.get(index);
+
+            boolean forward = direction == Direction.FORWARD;
+            var sources = forward ? instruction.getPredecessors() : instruction.getSuccessors();
+            joinInto(joined, sources, forward ? out : in, boundary);
+
+            boolean changed;
+            if (forward) {
+                System.arraycopy(joined, 0, in[index], 0, joined.length);
+                changed = BitSets.transfer(out[index], in[index], gen[index], kill[index]);
+            } else {
+                System.arraycopy(joined, 0, out[index], 0, joined.length);
+                changed = BitSets.transfer(in[index], out[index], gen[index], kill[index]);
+            }
+
+            if (changed) {
+                for (var next : forward ? instruction.getSuccessors() : instruction.getPredecessors()) {
+                    if (next instanceof Instruction nextInst && !inWorkList[indexOf(nextInst)]) {
+                        inWorkList[indexOf(nextInst)] = true;
+                        workList.add(indexOf(nextInst));
+                    }
+                }
+            }
+        }
+
+        return this;
+    }
+
+    private void joinInto(long[] joined, List<Node> sources, long[][] sets, long[] boundary) {
+        boolean first = true;
+        for (var source : sources) {
+            var set = source instanceof Instruction sourceInst ? sets[indexOf(sourceInst)] : boundary;
+            if (first) {
+                System.arraycopy(set, 0, joined, 0, joined.length);
+                first = false;
+            } else if (meet == Meet.UNION) {
+                BitSets.union(joined, set);
+            } else {
+                BitSets.intersect(joined, set);
+            }
+        }
+
+        // unreachable code (forward) or code that never reaches the end (backward)
+        if (first) {
+            BitSets.clear(joined);
+        }
+    }
+
+    /**
+     * buildCFG numbers the instructions from 1, in the order of {@link Method#getInstructions()}.
+     */
+    private int indexOf(Instruction instruction) {
+        return instruction.getId() - 1;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    public long[] getIn(Instruction instruction) {
+        return in[indexOf(instruction)];
+    }
+
+    public long[] getOut(Instruction instruction) {
+        return out[indexOf(instruction)];
+    }
+
+    public long[] getGen(Instruction instruction) {
+        return gen[indexOf(instruction)];
+    }
+
+    public long[] getKill(Instruction instruction) {
+        return kill[indexOf(instruction)];
+    }
+
+    /**
+     * Instructions of the method in reverse post-order of its CFG, followed by any unreachable instructions.
+     */
+    public static List<Instruction> reversePostOrder(Method method) {
+        List<Instruction> postOrder = new ArrayList<>();
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> nodeStack = new ArrayDeque<>();
+        Deque<Iterator<Node>> successorStack = new ArrayDeque<>();
+
+        visited.add(method.getBeginNode());
+        nodeStack.push(method.getBeginNode());
+        successorStack.push(method.getBeginNode().getSuccessors().iterator());
+        while (!nodeStack.isEmpty()) {
+            Iterator<Node> successors = successorStack.peek();
+            if (successors.hasNext()) {
+                Node successor = successors.next();
+                if (visited.add(successor)) {
+                    nodeStack.push(successor);
+                    successorStack.push(successor.getSuccessors().iterator());
+                }
+                continue;
+            }
+
+            successorStack.pop();
+            if (nodeStack.pop() instanceof Instruction instruction) {
+                postOrder.add(instruction);
+            }
+        }
+        Collections.reverse(postOrder);
+
+        for (Instruction instruction : method.getInstructions()) {
+            if (!visited.contains(instruction)) {
+                postOrder.add(instruction);
+            }
+        }
+        return postOrder;
+    }
+}
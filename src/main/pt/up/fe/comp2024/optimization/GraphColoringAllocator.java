@@ -0,0 +1,378 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Register allocation by graph coloring (Chaitin-Briggs with conservative coalescing).
+ */
+public class GraphColoringAllocator implements RegisterAllocator {
+
+    private final int numColors;
+
+    /**
+     * @param numColors the number of registers available, or a negative value for as many as needed
+     */
+    public GraphColoringAllocator(int numColors) {
+        this.numColors = numColors;
+    }
+
+    @Override
+    public Map<String, Integer> allocate(Method method, LivenessAnalysis liveness) {
+        VarIndex varIndex = liveness.getVars();
+        InterferenceGraph graph = new InterferenceGraph(varIndex.size());
+        Map<Instruction, Integer> loopDepths = computeLoopDepths(method);
+        List<Move> moves = new ArrayList<>();
+
+        // a variable written by an instruction interferes with everything that stays live after it, except the
+        // source of a copy, which holds the same value
+        for (Instruction instruction : method.getInstructions()) {
+            long[] liveOut = liveness.getOut(instruction);
+            int moveSource = getMoveSource(instruction, varIndex);
+            BitSets.forEach(liveness.getDefs(instruction), def -> {
+                graph.addNode(def);
+                BitSets.forEach(liveOut, live -> {
+                    if (live != moveSource) {
+                        graph.addEdge(def, live);
+                    }
+                });
+                if (moveSource >= 0) {
+                    graph.addNode(moveSource);
+                    moves.add(new Move(def, moveSource, loopDepths.getOrDefault(instruction, 0)));
+                }
+            });
+            BitSets.forEach(liveOut, graph::addNode);
+        }
+
+        // parameters and 'this' are not in the index, so the locals live on entry are those read before any write
+        // on some path. They are live together from the start of the method, but no write before that point makes
+        // them interfere, so each pair of them gets an edge here
+        for (Node successor : method.getBeginNode().getSuccessors()) {
+            if (successor instanceof Instruction first) {
+                long[] liveIn = liveness.getIn(first);
+                BitSets.forEach(liveIn, a -> {
+                    graph.addNode(a);
+                    BitSets.forEach(liveIn, b -> graph.addEdge(a, b));
+                });
+            }
+        }
+
+        boolean[] inGraph = new boolean[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            inGraph[node] = graph.hasNode(node);
+        }
+
+        double[] spillCosts = computeSpillCosts(method, liveness, loopDepths);
+        int[] representatives = coalesce(graph, moves, spillCosts);
+
+        Map<String, Integer> colorMap = new HashMap<>();
+        int[] colors = allocateRegisters(graph, spillCosts);
+        for (int node = 0; node < colors.length; node++) {
+            if (inGraph[node]) {
+                colorMap.put(varIndex.nameOf(node), colors[find(representatives, node)]);
+            }
+        }
+        return colorMap;
+    }
+
+    private record Move(int dest, int source, int loopDepth) {
+    }
+
+    /**
+     * @return the variable copied by a plain {@code dest := source} assignment, or -1 if the instruction is not
+     * such a copy
+     */
+    private int getMoveSource(Instruction instruction, VarIndex varIndex) {
+        if (instruction instanceof AssignInstruction assign
+                && !(assign.getDest() instanceof ArrayOperand)
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand source
+                && !(source instanceof ArrayOperand)
+                && !source.isLiteral()) {
+            return varIndex.indexOf(source.getName());
+        }
+        return -1;
+    }
+
+    /**
+     * Conservative coalescing of copy-related variables that do not interfere, so that copies become no-ops. A pair
+     * is merged only if the Briggs test (fewer than K neighbours of significant degree) or the George test (every
+     * neighbour of one either interferes with the other or has insignificant degree) shows it cannot make the graph
+     * harder to color. Moves inside deeper loops are tried first.
+     *
+     * @return the union-find parents, use {@link #find(int[], int)} to get the node a variable was merged into
+     */
+    private int[] coalesce(InterferenceGraph graph, List<Move> moves, double[] spillCosts) {
+        int[] representatives = new int[graph.size()];
+        for (int node = 0; node < representatives.length; node++) {
+            representatives[node] = node;
+        }
+        int numColors = getNumColors(graph);
+
+        moves.sort(Comparator.comparingInt(Move::loopDepth).reversed());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Move move : moves) {
+                int dest = find(representatives, move.dest());
+                int source = find(representatives, move.source());
+                if (dest == source || graph.interferes(dest, source)) {
+                    continue;
+                }
+
+                if (briggsTest(graph, dest, source, numColors) || georgeTest(graph, dest, source, numColors)) {
+                    graph.merge(dest, source);
+                    representatives[source] = dest;
+                    spillCosts[dest] += spillCosts[source];
+                    changed = true;
+                }
+            }
+        }
+        return representatives;
+    }
+
+    private boolean briggsTest(InterferenceGraph graph, int a, int b, int numColors) {
+        int significant = 0;
+        int[] neighbors = graph.getNeighbors(a);
+        for (int i = 0; i < graph.getDegree(a); i++) {
+            int neighbor = neighbors[i];
+            // a common neighbour loses one edge once a and b are merged
+            int degree = graph.interferes(neighbor, b) ? graph.getDegree(neighbor) - 1 : graph.getDegree(neighbor);
+            if (degree >= numColors) {
+                significant++;
+            }
+        }
+        neighbors = graph.getNeighbors(b);
+        for (int i = 0; i < graph.getDegree(b); i++) {
+            int neighbor = neighbors[i];
+            if (!graph.interferes(neighbor, a) && graph.getDegree(neighbor) >= numColors) {
+                significant++;
+            }
+        }
+        return significant < numColors;
+    }
+
+    private boolean georgeTest(InterferenceGraph graph, int keep, int drop, int numColors) {
+        int[] neighbors = graph.getNeighbors(drop);
+        for (int i = 0; i < graph.getDegree(drop); i++) {
+            int neighbor = neighbors[i];
+            if (graph.getDegree(neighbor) >= numColors && !graph.interferes(neighbor, keep)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int find(int[] representatives, int node) {
+        while (representatives[node] != node) {
+            representatives[node] = representatives[representatives[node]];
+            node = representatives[node];
+        }
+        return node;
+    }
+
+    private int getNumColors(InterferenceGraph graph) {
+        if (numColors >= 0) {
+            return numColors;
+        }
+        int nodeCount = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            if (graph.hasNode(node)) {
+                nodeCount++;
+            }
+        }
+        return Math.max(nodeCount, 1);
+    }
+
+    /**
+     * Spill cost of each variable: its number of uses and definitions, each weighted by 10^(loop depth).
+     */
+    private double[] computeSpillCosts(Method method, LivenessAnalysis liveness, Map<Instruction, Integer> loopDepths) {
+        double[] costs = new double[liveness.getVars().size()];
+
+        for (Instruction instruction : method.getInstructions()) {
+            double weight = Math.pow(10, Math.min(loopDepths.getOrDefault(instruction, 0), 8));
+            BitSets.forEach(liveness.getUses(instruction), var -> costs[var] += weight);
+            BitSets.forEach(liveness.getDefs(instruction), var -> costs[var] += weight);
+        }
+        return costs;
+    }
+
+    /**
+     * Loop nesting depth of each instruction, from the natural loops of the back edges found by a depth-first
+     * search of the CFG.
+     */
+    private Map<Instruction, Integer> computeLoopDepths(Method method) {
+        Map<Instruction, Integer> depths = new HashMap<>();
+        Set<Node> visited = new HashSet<>();
+        Set<Node> onStack = new HashSet<>();
+        Deque<Node> nodeStack = new ArrayDeque<>();
+        Deque<Iterator<Node>> successorStack = new ArrayDeque<>();
+
+        visited.add(method.getBeginNode());
+        onStack.add(method.getBeginNode());
+        nodeStack.push(method.getBeginNode());
+        successorStack.push(method.getBeginNode().getSuccessors().iterator());
+        while (!nodeStack.isEmpty()) {
+            Iterator<Node> successors = successorStack.peek();
+            if (!successors.hasNext()) {
+                successorStack.pop();
+                onStack.remove(nodeStack.pop());
+                continue;
+            }
+
+            Node successor = successors.next();
+            if (onStack.contains(successor)) {
+                // back edge: every node that reaches its source without going through the header is in the loop
+                Set<Node> body = new HashSet<>(List.of(successor));
+                Deque<Node> pending = new ArrayDeque<>();
+                if (body.add(nodeStack.peek())) {
+                    pending.push(nodeStack.peek());
+                }
+                while (!pending.isEmpty()) {
+                    for (Node predecessor : pending.pop().getPredecessors()) {
+                        if (body.add(predecessor)) {
+                            pending.push(predecessor);
+                        }
+                    }
+                }
+                for (Node node : body) {
+                    if (node instanceof Instruction instruction) {
+                        depths.merge(instruction, 1, Integer::sum);
+                    }
+                }
+            } else if (visited.add(successor)) {
+                onStack.add(successor);
+                nodeStack.push(successor);
+                successorStack.push(successor.getSuccessors().iterator());
+            }
+        }
+        return depths;
+    }
+
+    /**
+     * Chaitin-Briggs coloring. When no node can be simplified, the one with the lowest cost per neighbour is pushed
+     * optimistically; it is only spilled if its neighbours really used every color when it is popped. Spilled nodes
+     * get extra colors above the requested ones, shared among themselves whenever they do not interfere.
+     *
+     * @return the color of each variable, or -1 for variables that are not in the graph
+     */
+    private int[] allocateRegisters(InterferenceGraph graph, double[] spillCosts) {
+        int size = graph.size();
+        int nodeCount = 0;
+        for (int node = 0; node < size; node++) {
+            if (graph.hasNode(node)) {
+                nodeCount++;
+            }
+        }
+        int numColors = getNumColors(graph);
+
+        // simplify: repeatedly remove nodes with fewer neighbours than colors, keeping degrees up to date. Nodes
+        // with more are also kept by cost per neighbour, with a new entry on every degree change and the outdated
+        // ones skipped, so a blocked step does not scan the whole graph
+        int[] degrees = new int[size];
+        boolean[] removed = new boolean[size];
+        Deque<Integer> lowDegree = new ArrayDeque<>();
+        PriorityQueue<SpillCandidate> highDegree = new PriorityQueue<>();
+        for (int node = 0; node < size; node++) {
+            degrees[node] = graph.getDegree(node);
+            removed[node] = !graph.hasNode(node);
+            if (!removed[node]) {
+                if (degrees[node] < numColors) {
+                    lowDegree.add(node);
+                } else {
+                    highDegree.add(new SpillCandidate(node, degrees[node], spillCosts[node] / degrees[node]));
+                }
+            }
+        }
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        int remaining = nodeCount;
+        while (remaining > 0) {
+            Integer node = lowDegree.poll();
+            if (node == null) {
+                var candidate = highDegree.remove();
+                if (removed[candidate.node()] || candidate.degree() != degrees[candidate.node()]) {
+                    continue;
+                }
+                node = candidate.node();
+            } else if (removed[node]) {
+                continue;
+            }
+
+            stack.push(node);
+            removed[node] = true;
+            remaining--;
+
+            int[] neighbors = graph.getNeighbors(node);
+            for (int i = 0; i < graph.getDegree(node); i++) {
+                int neighbor = neighbors[i];
+                if (removed[neighbor]) {
+                    continue;
+                }
+                if (--degrees[neighbor] == numColors - 1) {
+                    lowDegree.add(neighbor);
+                } else if (degrees[neighbor] >= numColors) {
+                    highDegree.add(new SpillCandidate(neighbor, degrees[neighbor],
+                            spillCosts[neighbor] / degrees[neighbor]));
+                }
+            }
+        }
+
+        // select: give each node the lowest color not used by its already colored neighbours
+        int[] colors = new int[size];
+        Arrays.fill(colors, -1);
+        List<Integer> spilledNodes = new ArrayList<>();
+        boolean[] usedColors = new boolean[numColors];
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            colors[node] = lowestFreeColor(graph, colors, node, usedColors);
+            if (colors[node] < 0) {
+                spilledNodes.add(node);
+            }
+        }
+
+        // spill: the JVM has plenty of locals, so actual spills live in extra ones instead of memory
+        if (!spilledNodes.isEmpty()) {
+            boolean[] extraColors = new boolean[numColors + spilledNodes.size()];
+            for (int node : spilledNodes) {
+                colors[node] = lowestFreeColor(graph, colors, node, extraColors);
+            }
+        }
+
+        return colors;
+    }
+
+    /**
+     * A node that blocks simplification, with its degree when it was queued. Cheaper nodes per neighbour come first,
+     * and ties go to the lowest node for a deterministic allocation.
+     */
+    private record SpillCandidate(int node, int degree, double cost) implements Comparable<SpillCandidate> {
+
+        @Override
+        public int compareTo(SpillCandidate other) {
+            int byCost = Double.compare(cost, other.cost);
+            return byCost != 0 ? byCost : Integer.compare(node, other.node);
+        }
+    }
+
+    private int lowestFreeColor(InterferenceGraph graph, int[] colors, int node, boolean[] usedColors) {
+        Arrays.fill(usedColors, false);
+
+        int[] neighbors = graph.getNeighbors(node);
+        for (int i = 0; i < graph.getDegree(node); i++) {
+            int color = colors[neighbors[i]];
+            if (color >= 0 && color < usedColors.length) {
+                usedColors[color] = true;
+            }
+        }
+
+        for (int color = 0; color < usedColors.length; color++) {
+            if (!usedColors[color]) {
+                return color;
+            }
+        }
+        return -1;
+    }
+}
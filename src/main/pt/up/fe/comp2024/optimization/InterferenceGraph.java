@@ -0,0 +1,140 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.Arrays;
+
+/**
+ * Interference graph over variables numbered by a {@link VarIndex}.
+ * <p>
+ * Edges are stored twice: in a triangular bit-matrix for constant time membership tests and in per-node adjacency
+ * arrays for iterating neighbours. The degree of each node is kept up to date as edges are added.
+ */
+public class InterferenceGraph {
+
+    /**
+     * Largest number of variables whose matrix can be indexed with an int.
+     */
+    public static final int MAX_SIZE = 65536;
+
+    private final int size;
+    private final long[] matrix;
+    private final int[][] adjacency;
+    private final int[] degrees;
+    private final boolean[] nodes;
+    private int edgeCount;
+
+    public InterferenceGraph(int size) {
+        if (size < 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Interference graph of " + size + " variables, the maximum is "
+                    + MAX_SIZE);
+        }
+        this.size = size;
+        this.matrix = BitSets.create((int) getMatrixBits(size));
+        this.adjacency = new int[size][];
+        this.degrees = new int[size];
+        this.nodes = new boolean[size];
+    }
+
+    /**
+     * @return the number of bits of the matrix of a graph with the given number of variables, whatever its edges
+     */
+    public static long getMatrixBits(int size) {
+        return (long) size * (size - 1) / 2;
+    }
+
+    private static int matrixIndex(int a, int b) {
+        int high = Math.max(a, b);
+        int low = Math.min(a, b);
+        return (int) ((long) high * (high - 1) / 2 + low);
+    }
+
+    public void addNode(int node) {
+        nodes[node] = true;
+    }
+
+    public void addEdge(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        addNode(a);
+        addNode(b);
+
+        int index = matrixIndex(a, b);
+        if (BitSets.get(matrix, index)) {
+            return;
+        }
+        BitSets.set(matrix, index);
+        addNeighbor(a, b);
+        addNeighbor(b, a);
+        edgeCount++;
+    }
+
+    private void addNeighbor(int node, int neighbor) {
+        if (adjacency[node] == null) {
+            adjacency[node] = new int[4];
+        } else if (degrees[node] == adjacency[node].length) {
+            adjacency[node] = Arrays.copyOf(adjacency[node], degrees[node] * 2);
+        }
+        adjacency[node][degrees[node]++] = neighbor;
+    }
+
+    /**
+     * Merges node {@code drop} into node {@code keep}: keep inherits every edge of drop and drop leaves the graph.
+     */
+    public void merge(int keep, int drop) {
+        int[] dropNeighbors = getNeighbors(drop);
+        int dropDegree = degrees[drop];
+        for (int i = 0; i < dropDegree; i++) {
+            int neighbor = dropNeighbors[i];
+            removeNeighbor(neighbor, drop);
+            BitSets.clear(matrix, matrixIndex(neighbor, drop));
+            edgeCount--;
+            addEdge(keep, neighbor);
+        }
+        adjacency[drop] = null;
+        degrees[drop] = 0;
+        nodes[drop] = false;
+    }
+
+    private void removeNeighbor(int node, int neighbor) {
+        int[] neighbors = adjacency[node];
+        for (int i = 0; i < degrees[node]; i++) {
+            if (neighbors[i] == neighbor) {
+                neighbors[i] = neighbors[--degrees[node]];
+                return;
+            }
+        }
+    }
+
+    public boolean interferes(int a, int b) {
+        return a != b && BitSets.get(matrix, matrixIndex(a, b));
+    }
+
+    /**
+     * @return the number of variable slots of the graph, including variables that are not nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the variable takes part in the graph (it is live or written somewhere in the method)
+     */
+    public boolean hasNode(int node) {
+        return nodes[node];
+    }
+
+    public int getDegree(int node) {
+        return degrees[node];
+    }
+
+    /**
+     * @return the neighbours of the node, only the first {@link #getDegree(int)} entries are valid
+     */
+    public int[] getNeighbors(int node) {
+        return adjacency[node] == null ? new int[0] : adjacency[node];
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+}
@@ -3,25 +3,33 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.CompilerEvents;
 
 import java.util.Collections;
 public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
+        var event = new CompilerEvents.OllirGen();
+        event.begin();
 
         var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
         var ollirCode = visitor.visit(semanticsResult.getRootNode());
 
+        event.className = semanticsResult.getSymbolTable().getClassName();
+        event.commit();
+
         return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
-        int n = Integer.parseInt(ollirResult.getConfig().getOrDefault("registerAllocation", "-1"));
+        int n = CompilerConfig.getRegisterAllocation(ollirResult.getConfig());
 
         if(n >= 0) {
-            RegisterAllocation registerAllocation = new RegisterAllocation(ollirResult, n);
+            RegisterAllocation registerAllocation = new RegisterAllocation(ollirResult, n,
+                    CompilerConfig.getRegisterAllocator(ollirResult.getConfig()));
             registerAllocation.optimizeRegisters();
         }
         return ollirResult;
@@ -0,0 +1,126 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import java.util.*;
+
+/**
+ * Register allocation by linear scan over live intervals (Poletto and Sarkar).
+ * <p>
+ * Each instruction i has two positions, 2i before it and 2i+1 after it, and the interval of a variable spans every
+ * position where it is live or written. Intervals are conservative around loops but never need an interference
+ * graph, so allocation is O(n log n) in the number of variables, plus O(k) to choose each spill with k registers.
+ */
+public class LinearScanAllocator implements RegisterAllocator {
+
+    private final int numColors;
+
+    /**
+     * @param numColors the number of registers available, or a negative value for as many as needed
+     */
+    public LinearScanAllocator(int numColors) {
+        this.numColors = numColors;
+    }
+
+    private static class Interval {
+        final int var;
+        int start = Integer.MAX_VALUE;
+        int end = -1;
+        int register = -1;
+
+        Interval(int var) {
+            this.var = var;
+        }
+
+        void cover(int position) {
+            start = Math.min(start, position);
+            end = Math.max(end, position);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> allocate(Method method, LivenessAnalysis liveness) {
+        VarIndex varIndex = liveness.getVars();
+        Interval[] intervals = new Interval[varIndex.size()];
+        List<Instruction> instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            int before = 2 * i;
+            int after = 2 * i + 1;
+            BitSets.forEach(liveness.getIn(instruction), var -> getInterval(intervals, var).cover(before));
+            BitSets.forEach(liveness.getOut(instruction), var -> getInterval(intervals, var).cover(after));
+            BitSets.forEach(liveness.getDefs(instruction), var -> getInterval(intervals, var).cover(after));
+        }
+
+        List<Interval> sorted = new ArrayList<>();
+        for (Interval interval : intervals) {
+            if (interval != null) {
+                sorted.add(interval);
+            }
+        }
+        sorted.sort(Comparator.comparingInt((Interval interval) -> interval.start).thenComparingInt(interval -> interval.var));
+
+        int numRegisters = numColors >= 0 ? numColors : Integer.MAX_VALUE;
+        PriorityQueue<Interval> active = new PriorityQueue<>(Comparator.comparingInt(interval -> interval.end));
+        TreeSet<Integer> freeRegisters = new TreeSet<>();
+        int nextRegister = 0;
+        List<Interval> spilled = new ArrayList<>();
+
+        for (Interval current : sorted) {
+            while (!active.isEmpty() && active.peek().end < current.start) {
+                freeRegisters.add(active.poll().register);
+            }
+
+            if (!freeRegisters.isEmpty()) {
+                current.register = freeRegisters.pollFirst();
+                active.add(current);
+            } else if (nextRegister < numRegisters) {
+                current.register = nextRegister++;
+                active.add(current);
+            } else {
+                // spill whichever of the current and the active intervals ends last
+                Interval victim = current;
+                for (Interval interval : active) {
+                    if (interval.end > victim.end) {
+                        victim = interval;
+                    }
+                }
+                if (victim != current) {
+                    active.remove(victim);
+                    current.register = victim.register;
+                    victim.register = -1;
+                    active.add(current);
+                }
+                spilled.add(victim);
+            }
+        }
+
+        // spilled variables share extra locals above the requested ones whenever their intervals do not overlap,
+        // packed by the same scan as the registers, without a limit
+        spilled.sort(Comparator.comparingInt((Interval interval) -> interval.start).thenComparingInt(interval -> interval.var));
+        PriorityQueue<Interval> activeSpills = new PriorityQueue<>(Comparator.comparingInt(interval -> interval.end));
+        TreeSet<Integer> freeSlots = new TreeSet<>();
+        int nextSlot = nextRegister;
+        for (Interval interval : spilled) {
+            while (!activeSpills.isEmpty() && activeSpills.peek().end < interval.start) {
+                freeSlots.add(activeSpills.poll().register);
+            }
+            interval.register = freeSlots.isEmpty() ? nextSlot++ : freeSlots.pollFirst();
+            activeSpills.add(interval);
+        }
+
+        Map<String, Integer> registers = new HashMap<>();
+        for (Interval interval : sorted) {
+            registers.put(varIndex.nameOf(interval.var), interval.register);
+        }
+        return registers;
+    }
+
+    private Interval getInterval(Interval[] intervals, int var) {
+        if (intervals[var] == null) {
+            intervals[var] = new Interval(var);
+        }
+        return intervals[var];
+    }
+}
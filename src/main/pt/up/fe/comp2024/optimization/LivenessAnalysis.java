@@ -0,0 +1,131 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+/**
+ * Live variable analysis: a variable is live at a point if its current value may still be read later.
+ * <p>
+ * Facts are the variables of the method, numbered by a {@link VarIndex}.
+ */
+public class LivenessAnalysis extends DataflowAnalysis {
+
+    private final VarIndex vars;
+
+    public LivenessAnalysis(Method method, VarIndex vars) {
+        super(method, Direction.BACKWARD, Meet.UNION);
+        this.vars = vars;
+    }
+
+    public VarIndex getVars() {
+        return vars;
+    }
+
+    @Override
+    protected int getDomainSize() {
+        return vars.size();
+    }
+
+    @Override
+    protected void initGenKill(Instruction instruction, long[] gen, long[] kill) {
+        addUses(instruction, gen);
+        addDefs(instruction, kill);
+    }
+
+    /**
+     * @return the variables written by the instruction
+     */
+    public long[] getDefs(Instruction instruction) {
+        return getKill(instruction);
+    }
+
+    /**
+     * @return the variables read by the instruction
+     */
+    public long[] getUses(Instruction instruction) {
+        return getGen(instruction);
+    }
+
+    private void addDefs(Instruction instruction, long[] defs) {
+        if (instruction instanceof AssignInstruction assign) {
+            // storing into an array element reads the array reference, it does not redefine it
+            if (assign.getDest() instanceof Operand op && !(op instanceof ArrayOperand)) {
+                int index = vars.indexOf(op.getName());
+                if (index >= 0) {
+                    BitSets.set(defs, index);
+                }
+            }
+        }
+    }
+
+    private void addUses(Instruction instruction, long[] uses) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                if (instruction instanceof AssignInstruction assign) {
+                    if (assign.getDest() instanceof ArrayOperand arrayOp) {
+                        addUses(arrayOp, uses);
+                    }
+                    addUses(assign.getRhs(), uses);
+                }
+            }
+            case CALL -> {
+                if (instruction instanceof CallInstruction call) {
+                    if (call.getInvocationType() != CallType.invokestatic && call.getInvocationType() != CallType.NEW) {
+                        addUses(call.getCaller(), uses);
+                    }
+                    call.getArguments().forEach(arg -> addUses(arg, uses));
+                }
+            }
+            case RETURN -> {
+                if (instruction instanceof ReturnInstruction ret && ret.hasReturnValue()) {
+                    addUses(ret.getOperand(), uses);
+                }
+            }
+            case UNARYOPER -> {
+                if (instruction instanceof UnaryOpInstruction unop) {
+                    addUses(unop.getOperand(), uses);
+                }
+            }
+            case BINARYOPER -> {
+                if (instruction instanceof BinaryOpInstruction binop) {
+                    addUses(binop.getLeftOperand(), uses);
+                    addUses(binop.getRightOperand(), uses);
+                }
+            }
+            case NOPER -> {
+                if (instruction instanceof SingleOpInstruction singleOp) {
+                    addUses(singleOp.getSingleOperand(), uses);
+                }
+            }
+            case BRANCH -> {
+                if (instruction instanceof CondBranchInstruction branch) {
+                    branch.getOperands().forEach(op -> addUses(op, uses));
+                }
+            }
+            case GETFIELD -> {
+                if (instruction instanceof GetFieldInstruction get) {
+                    addUses(get.getObject(), uses);
+                }
+            }
+            case PUTFIELD -> {
+                if (instruction instanceof PutFieldInstruction put) {
+                    addUses(put.getObject(), uses);
+                    addUses(put.getValue(), uses);
+                }
+            }
+        }
+    }
+
+    private void addUses(Element element, long[] uses) {
+        if (!(element instanceof Operand op) || element.isLiteral()) {
+            return;
+        }
+        // class names (static calls, 'new') also show up as operands, only variables are of interest
+        int index = vars.indexOf(op.getName());
+        if (index >= 0) {
+            BitSets.set(uses, index);
+        }
+        if (op instanceof ArrayOperand arrayOp) {
+            arrayOp.getIndexOperands().forEach(indexOp -> addUses(indexOp, uses));
+        }
+    }
+}
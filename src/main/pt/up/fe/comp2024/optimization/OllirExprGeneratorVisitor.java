@@ -198,6 +198,25 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
 
+    /**
+     * Generates the condition of a branch. Relational expressions are left in the branch itself
+     * ({@code if (a.i32 <.bool b.i32) goto ...}) so the backend can emit a single compare-and-branch.
+     */
+    public OllirExprResult visitCondition(JmmNode node) {
+        while (PRIORITY_EXPR.check(node)) {
+            node = node.getJmmChild(0);
+        }
+        if (!BINARY_EXPR.check(node) || !Objects.equals(node.get("op"), "<")) {
+            return visit(node);
+        }
+
+        var lhs = visit(node.getJmmChild(0));
+        var rhs = visit(node.getJmmChild(1));
+        String code = lhs.getCode() + SPACE + node.get("op") + OptUtils.toOllirType(getExprType(node, table)) + SPACE
+                + rhs.getCode();
+        return new OllirExprResult(code, lhs.getComputation() + rhs.getComputation());
+    }
+
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
         boolean isShortCircuit = Objects.equals(node.get("op"), "&&");
 
@@ -361,7 +380,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 if (argumentReturnType.isPresent() && METHOD_CALL.check(child)) {
                     return visitForceTemp(child, OptUtils.toOllirType(argumentReturnType.get().get(i - 1).getType()));
                 }
-                if (LIST_ACCESS.check(child)) {
+                if (isListAccess(child)) {
                     return visitForceTemp(child, ".i32");
                 }
                 return visit(child);
@@ -378,6 +397,16 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         return new OllirExprResult(code, computation.toString());
     }
 
+    /**
+     * @return true if the expression is an array access, possibly in parentheses
+     */
+    private static boolean isListAccess(JmmNode node) {
+        while (PRIORITY_EXPR.check(node)) {
+            node = node.getChild(0);
+        }
+        return LIST_ACCESS.check(node);
+    }
+
     private OllirExprResult methodCallHelper(JmmNode node, StringBuilder computation, String code, String className, String type, boolean forceNoType) {
         var children = node.getChildren();
         var argumentReturnType = table.getParametersTry(node.get("name"));
@@ -401,9 +430,14 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                     break;
                 } else if (METHOD_CALL.check(child)) {
                     arguments.add(visitForceTemp(child, OptUtils.toOllirType(argumentReturnType.get().get(i - 1).getType())));
+                } else if (isListAccess(child)) {
+                    // OLLIR does not take array elements as arguments
+                    arguments.add(visitForceTemp(child, ".i32"));
                 } else {
                     arguments.add(visit(child));
                 }
+            } else if (isListAccess(child)) {
+                arguments.add(visitForceTemp(child, ".i32"));
             } else {
                 arguments.add(visit(child));
             }
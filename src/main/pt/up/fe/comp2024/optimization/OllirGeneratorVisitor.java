@@ -70,7 +70,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         code.append(loopTag).append(END_TAG);
 
-        var cond = exprVisitor.visit(whileCond);
+        var cond = exprVisitor.visitCondition(whileCond);
         code.append(cond.getComputation());
         //If loop condition is true, goto body
         code.append("if").append(SPACE).append("(");
@@ -99,7 +99,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         var ifTag = OptUtils.getIfTag();
         var enfIfTag = "end" + "_" + ifTag;
 
-        var cond = exprVisitor.visit(ifCond);
+        var cond = exprVisitor.visitCondition(ifCond);
         code.append(cond.getComputation());
         code.append("if").append(SPACE).append("(");
         code.append(cond.getCode()).append(")").append(SPACE).append("goto").append(SPACE).append(ifTag).append(END_STMT);
@@ -2,242 +2,119 @@ package pt.up.fe.comp2024.optimization;
 
 import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.CompilerEvents;
 
 import java.util.*;
 
 public class RegisterAllocation {
 
+    /**
+     * Above this estimated number of interference edges, graph coloring falls back to linear scan.
+     */
+    public static final long GRAPH_SIZE_THRESHOLD = 2_000_000;
+
+    /**
+     * Above this number of bits of the interference matrix, which grows with the square of the variables, graph
+     * coloring falls back to linear scan. 2^28 bits are 32 MB, about 23k variables.
+     */
+    public static final long MATRIX_SIZE_THRESHOLD = 1L << 28;
+
     private final OllirResult ollirResult;
     private final int maxRegisters;
+    private final String allocator;
 
     public RegisterAllocation(OllirResult ollirResult, int maxRegisters) {
+        this(ollirResult, maxRegisters, CompilerConfig.GRAPH_ALLOCATOR);
+    }
+
+    public RegisterAllocation(OllirResult ollirResult, int maxRegisters, String allocator) {
         this.ollirResult = ollirResult;
         this.maxRegisters = maxRegisters;
+        this.allocator = allocator;
     }
 
     public void optimizeRegisters() {
+        ollirResult.getOllirClass().buildCFGs();
+
         ollirResult.getOllirClass().getMethods().forEach(method -> {
-            Map<Instruction, Set<String>> liveIns = new HashMap<>();
-            Map<Instruction, Set<String>> liveOuts = new HashMap<>();
-            liveVariableAnalysis(method, liveIns, liveOuts);
-            Map<String, Integer> registerAllocation = buildAndAllocateRegisters(method, liveIns, liveOuts);
+            var event = new CompilerEvents.RegisterAllocation();
+            event.begin();
+
+            // 'this' and the parameters arrive in fixed slots, only the locals above them are allocated
+            int reservedRegisters = getReservedRegisters(method);
+            int numColors = maxRegisters > 0 ? Math.max(maxRegisters - reservedRegisters, 0) : -1;
+
+            var liveness = new LivenessAnalysis(method, VarIndex.ofLocals(method));
+            liveness.solve();
+            var registerAllocator = getAllocator(method, liveness, numColors);
+            Map<String, Integer> registerAllocation = registerAllocator.allocate(method, liveness);
 
-            int requiredRegisters = new TreeSet<>(registerAllocation.values()).size();
+            // variables that could not be colored were given extra locals above the requested ones
+            int requiredRegisters = reservedRegisters
+                    + registerAllocation.values().stream().max(Integer::compare).orElse(-1) + 1;
             if (maxRegisters > 0 && requiredRegisters > maxRegisters) {
-                throw new IllegalStateException("Insufficient registers: required " + requiredRegisters + ", available " + maxRegisters);
+                var spilled = registerAllocation.entrySet().stream()
+                        .filter(entry -> entry.getValue() >= numColors)
+                        .map(Map.Entry::getKey)
+                        .sorted()
+                        .toList();
+                ollirResult.getReports().add(Report.newWarn(Stage.OPTIMIZATION, -1, -1,
+                        String.format("Method '%s' needs %d registers, %d were requested; spilled %s to extra locals",
+                                method.getMethodName(), requiredRegisters, maxRegisters, spilled),
+                        null));
             }
 
             registerAllocation.forEach((varName, reg) ->
-                    method.getVarTable().get(varName).setVirtualReg(reg)
+                    method.getVarTable().get(varName).setVirtualReg(reservedRegisters + reg)
             );
-        });
-    }
-
-    private void liveVariableAnalysis(Method method, Map<Instruction, Set<String>> liveIns, Map<Instruction, Set<String>> liveOuts) {
-        List<Instruction> instructions = method.getInstructions();
-        instructions.forEach(instruction -> {
-            liveIns.put(instruction, new HashSet<>());
-            liveOuts.put(instruction, new HashSet<>());
-        });
 
-        Queue<Instruction> workQueue = new LinkedList<>(instructions);
-        while (!workQueue.isEmpty()) {
-            Instruction instruction = workQueue.poll();
-            Set<String> oldLiveIn = new HashSet<>(liveIns.get(instruction));
-            Set<String> oldLiveOut = new HashSet<>(liveOuts.get(instruction));
-
-            Set<String> liveIn = new HashSet<>(getUses(instruction));
-            Set<String> liveOut = new HashSet<>();
-
-            for (Instruction successor : getSuccessors(instructions, instruction)) {
-                liveOut.addAll(liveIns.get(successor));
-            }
-
-            liveIn.addAll(liveOut);
-            liveIn.removeAll(getDefs(instruction));
-
-            liveIns.put(instruction, liveIn);
-            liveOuts.put(instruction, liveOut);
-
-            if (!oldLiveIn.equals(liveIn) || !oldLiveOut.equals(liveOut)) {
-                workQueue.addAll(getPredecessors(instructions, instruction));
-            }
-        }
-    }
-
-    private Set<String> getDefs(Instruction instruction) {
-        Set<String> defs = new HashSet<>();
-        if (instruction instanceof AssignInstruction assign) {
-            if (assign.getDest() instanceof Operand op) {
-                defs.add(op.getName());
-            }
-        }
-        return defs;
-    }
-
-    private Set<String> getUses(Instruction instruction) {
-        Set<String> uses = new HashSet<>();
-        switch (instruction.getInstType()) {
-            case ASSIGN -> {
-                if (instruction instanceof AssignInstruction assign) {
-                    uses.addAll(getUses(assign.getRhs()));
-                }
-            }
-            case CALL -> {
-                if (instruction instanceof CallInstruction call) {
-                    if (call.getInvocationType() != CallType.invokestatic && call.getInvocationType() != CallType.NEW && call.getCaller() instanceof Operand op) {
-                        uses.add(op.getName());
-                    }
-                    call.getArguments().stream()
-                            .filter(op -> op instanceof Operand)
-                            .forEach(op -> uses.add(((Operand) op).getName()));
-                }
-            }
-            case RETURN -> {
-                if (instruction instanceof ReturnInstruction ret) {
-                    if (ret.getOperand() instanceof Operand op) {
-                        uses.add(op.getName());
-                    }
-                }
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = method.getMethodName();
+                event.allocator = registerAllocator.getClass().getSimpleName();
+                event.variables = liveness.getVars().size();
+                event.interferenceEdges = estimateInterferenceEdges(method, liveness);
+                event.registers = requiredRegisters;
+                event.commit();
             }
-            case UNARYOPER -> {
-                if (instruction instanceof UnaryOpInstruction unop) {
-                    if (unop.getOperand() instanceof Operand op) {
-                        uses.add(op.getName());
-                    }
-                }
-            }
-            case BINARYOPER -> {
-                if (instruction instanceof BinaryOpInstruction binop) {
-                    if (binop.getLeftOperand() instanceof Operand l_op) {
-                        uses.add(l_op.getName());
-                    }
-                    if (binop.getRightOperand() instanceof Operand r_op) {
-                        uses.add(r_op.getName());
-                    }
-                }
-            }
-            case NOPER -> {
-                if (instruction instanceof OpCondInstruction opcond) {
-                    opcond.getOperands().stream()
-                            .filter(op -> op instanceof Operand)
-                            .forEach(op -> uses.add(((Operand) op).getName()));
-                }
-            }
-            case PUTFIELD -> {
-                if (instruction instanceof PutFieldInstruction put) {
-                    if (put.getValue() instanceof Operand op) {
-                        uses.add(op.getName());
-                    }
-                }
-            }
-        }
-        return uses;
-    }
-
-    private Map<String, Integer> buildAndAllocateRegisters(Method method, Map<Instruction, Set<String>> liveIns, Map<Instruction, Set<String>> liveOuts) {
-        Map<String, Set<String>> interferenceGraph = new HashMap<>();
-        List<Instruction> instructions = method.getInstructions();
-
-        for (Instruction instruction : instructions) {
-            Set<String> liveVariables = new HashSet<>(liveIns.get(instruction));
-            liveVariables.addAll(liveOuts.get(instruction));
-            liveVariables.addAll(getDefs(instruction));
-
-            for (String var : liveVariables) {
-                interferenceGraph.putIfAbsent(var, new HashSet<>());
-            }
-
-            List<String> vars = new ArrayList<>(liveVariables);
-            for (int i = 0; i < vars.size(); i++) {
-                for (int j = i + 1; j < vars.size(); j++) {
-                    String var1 = vars.get(i);
-                    String var2 = vars.get(j);
-                    interferenceGraph.get(var1).add(var2);
-                    interferenceGraph.get(var2).add(var1);
-                }
-            }
-        }
-
-        return allocateRegisters(interferenceGraph);
+        });
     }
 
-    private Map<String, Integer> allocateRegisters(Map<String, Set<String>> graph) {
-        Deque<String> stack = new ArrayDeque<>();
-        Set<String> spilledNodes = new HashSet<>();
-        Map<String, Integer> colorMap = new HashMap<>();
-        int numColors = maxRegisters > 0 ? maxRegisters : graph.size();
-
-        Map<String, Set<String>> mutableGraph = new HashMap<>(graph);
-
-        while (!mutableGraph.isEmpty()) {
-            boolean foundNode = false;
-
-            for (Map.Entry<String, Set<String>> entry : mutableGraph.entrySet()) {
-                String node = entry.getKey();
-                Set<String> neighbors = entry.getValue();
-
-                if (neighbors.size() < numColors) {
-                    stack.push(node);
-                    mutableGraph.remove(node);
-                    for (String neighbor : neighbors) {
-                        mutableGraph.get(neighbor).remove(node);
-                    }
-                    foundNode = true;
-                    break;
-                }
-            }
-
-            if (!foundNode) {
-                String nodeToSpill = mutableGraph.keySet().iterator().next();
-                stack.push(nodeToSpill);
-                mutableGraph.remove(nodeToSpill);
-                for (String neighbor : graph.get(nodeToSpill)) {
-                    mutableGraph.get(neighbor).remove(nodeToSpill);
-                }
-                spilledNodes.add(nodeToSpill);
+    /**
+     * Number of local slots the JVM fills on entry: 'this' for instance methods, then one per parameter.
+     */
+    private static int getReservedRegisters(Method method) {
+        int reserved = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+        for (var entry : method.getVarTable().entrySet()) {
+            if (VarIndex.isParameter(entry.getKey(), entry.getValue())) {
+                reserved = Math.max(reserved, entry.getValue().getVirtualReg() + 1);
             }
         }
-
-        while (!stack.isEmpty()) {
-            String node = stack.pop();
-            boolean[] usedColors = new boolean[numColors];
-
-            for (String neighbor : graph.get(node)) {
-                Integer neighborColor = colorMap.get(neighbor);
-                if (neighborColor != null) {
-                    usedColors[neighborColor] = true;
-                }
-            }
-
-            for (int color = 0; color < usedColors.length; color++) {
-                if (!usedColors[color]) {
-                    colorMap.put(node, color);
-                    break;
-                }
-            }
-        }
-
-        if (!spilledNodes.isEmpty()) {
-            System.out.println("Register spilling occurred for variables: " + spilledNodes);
-        }
-
-        return colorMap;
+        return reserved;
     }
 
-    private List<Instruction> getSuccessors(List<Instruction> instructions, Instruction instruction) {
-        int index = instructions.indexOf(instruction);
-        if (index >= 0 && index < instructions.size() - 1) {
-            return Collections.singletonList(instructions.get(index + 1));
+    private RegisterAllocator getAllocator(Method method, LivenessAnalysis liveness, int numColors) {
+        int variables = liveness.getVars().size();
+        if (CompilerConfig.LINEAR_ALLOCATOR.equals(allocator)
+                || InterferenceGraph.getMatrixBits(variables) > MATRIX_SIZE_THRESHOLD
+                || estimateInterferenceEdges(method, liveness) > GRAPH_SIZE_THRESHOLD) {
+            return new LinearScanAllocator(numColors);
         }
-        return Collections.emptyList();
+        return new GraphColoringAllocator(numColors);
     }
 
-    private List<Instruction> getPredecessors(List<Instruction> instructions, Instruction instruction) {
-        int index = instructions.indexOf(instruction);
-        if (index > 0 && index < instructions.size()) {
-            return Collections.singletonList(instructions.get(index - 1));
+    /**
+     * Upper bound of the number of edges of the interference graph: each definition against what is live after it.
+     */
+    private long estimateInterferenceEdges(Method method, LivenessAnalysis liveness) {
+        long edges = 0;
+        for (Instruction instruction : method.getInstructions()) {
+            edges += (long) BitSets.cardinality(liveness.getDefs(instruction))
+                    * BitSets.cardinality(liveness.getOut(instruction));
         }
-        return Collections.emptyList();
+        return edges;
     }
 }
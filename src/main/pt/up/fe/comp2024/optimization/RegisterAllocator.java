@@ -0,0 +1,21 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Method;
+
+import java.util.Map;
+
+/**
+ * A register allocation strategy for a single method.
+ */
+public interface RegisterAllocator {
+
+    /**
+     * Assigns a register, counted from 0, to every variable numbered by the liveness that is live or written
+     * somewhere. Registers above the available ones are only used for variables that had to be spilled.
+     *
+     * @param method   the method, with its CFG already built
+     * @param liveness the solved liveness of the method
+     * @return the register of each variable, by name
+     */
+    Map<String, Integer> allocate(Method method, LivenessAnalysis liveness);
+}
@@ -0,0 +1,65 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
+
+import java.util.*;
+
+/**
+ * Dense numbering of the variables of a method, used to index bitsets and matrices.
+ * <p>
+ * Variables are numbered by their original virtual register (then by name), so parameters and 'this' come first
+ * and the numbering is deterministic between runs. Class fields, which OLLIR also keeps in the var table, are never
+ * numbered.
+ */
+public class VarIndex {
+
+    private final Map<String, Integer> indexes;
+    private final String[] names;
+
+    public VarIndex(Method method) {
+        this(method, true);
+    }
+
+    private VarIndex(Method method, boolean includeParameters) {
+        var entries = new ArrayList<>(method.getVarTable().entrySet());
+        entries.removeIf(entry -> entry.getValue().getScope() == VarScope.FIELD
+                || (!includeParameters && isParameter(entry.getKey(), entry.getValue())));
+        entries.sort(Comparator.comparingInt((Map.Entry<String, Descriptor> entry) -> entry.getValue().getVirtualReg())
+                .thenComparing(Map.Entry::getKey));
+
+        this.indexes = new HashMap<>();
+        this.names = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            names[i] = entries.get(i).getKey();
+            indexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * Numbers only the local variables and temporaries of the method, leaving out 'this' and the parameters.
+     */
+    public static VarIndex ofLocals(Method method) {
+        return new VarIndex(method, false);
+    }
+
+    public static boolean isParameter(String name, Descriptor descriptor) {
+        return "this".equals(name) || descriptor.getScope() == VarScope.PARAMETER;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the index of the variable, or -1 if the name is not a variable of the method (e.g. a class name)
+     */
+    public int indexOf(String name) {
+        return indexes.getOrDefault(name, -1);
+    }
+
+    public String nameOf(int index) {
+        return names[index];
+    }
+}
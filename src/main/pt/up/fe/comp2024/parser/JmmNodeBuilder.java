@@ -0,0 +1,175 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the AST while parsing, as a parse listener, so the parser does not need to build a parse tree first.
+ * <p>
+ * The nodes are {@link CompactJmmNode}s equal to the ones {@link pt.up.fe.comp.jmm.ast.antlr.AntlrToJmmNodeConverter}
+ * creates from the parse tree: a node per rule context, of the kind named after its class, with the positions and the
+ * public fields of the context as attributes. Fields that hold a context, e.g. {@code ifCond}, hold the node of that
+ * context instead.
+ */
+class JmmNodeBuilder implements ParseTreeListener {
+
+    private record ContextClass(Kind kind, List<Field> fields) {
+    }
+
+    private record Built(ParserRuleContext context, JmmNode node) {
+    }
+
+    private static final Map<Class<?>, ContextClass> CONTEXT_CLASSES = new ConcurrentHashMap<>();
+
+    private final Parser parser;
+    // nodes built for the children of each rule being parsed, the bottom list holds the root
+    private final Deque<List<Built>> children = new ArrayDeque<>(List.of(new ArrayList<>()));
+    // identifiers and literals repeat a lot, the nodes share a single copy of each
+    private final Map<String, String> strings = new HashMap<>();
+
+    JmmNodeBuilder(Parser parser) {
+        this.parser = parser;
+    }
+
+    JmmNode getRoot() {
+        var roots = children.getLast();
+        return roots.isEmpty() ? null : roots.get(roots.size() - 1).node();
+    }
+
+    @Override
+    public void enterEveryRule(ParserRuleContext ctx) {
+        var siblings = children.peek();
+        var ruleChildren = new ArrayList<Built>();
+
+        // a left-recursive rule turns what it parsed so far into the first child of a new context, even the root
+        if (!siblings.isEmpty() && siblings.get(siblings.size() - 1).context().getParent() == ctx) {
+            ruleChildren.add(siblings.remove(siblings.size() - 1));
+        }
+
+        children.push(ruleChildren);
+    }
+
+    @Override
+    public void exitEveryRule(ParserRuleContext ctx) {
+        // the rules are exited as the parse is abandoned at the first error, see BailErrorStrategy
+        if (ctx.exception != null) {
+            return;
+        }
+
+        var node = build(ctx, children.pop());
+        children.peek().add(new Built(ctx, node));
+    }
+
+    @Override
+    public void visitTerminal(TerminalNode node) {
+    }
+
+    @Override
+    public void visitErrorNode(ErrorNode node) {
+    }
+
+    private JmmNode build(ParserRuleContext ctx, List<Built> ruleChildren) {
+        var contextClass = CONTEXT_CLASSES.computeIfAbsent(ctx.getClass(), JmmNodeBuilder::getContextClass);
+        var node = new CompactJmmNode(contextClass.kind());
+
+        // left-recursive rules only set the stop token of the contexts they nest after exiting them, it is the last read
+        var start = ctx.getStart();
+        var stop = ctx.getStop() != null ? ctx.getStop() : parser.getInputStream().LT(-1);
+        if (stop == null || stop.getTokenIndex() < start.getTokenIndex()) {
+            stop = parser.getInputStream().get(start.getTokenIndex() - 1);
+        }
+        node.put(NodePosition.LINE_START.getKey(), Integer.toString(start.getLine()));
+        node.put(NodePosition.COL_START.getKey(), Integer.toString(start.getCharPositionInLine()));
+        node.put(NodePosition.LINE_END.getKey(), Integer.toString(stop.getLine()));
+        node.put(NodePosition.COL_END.getKey(), Integer.toString(stop.getCharPositionInLine()));
+
+        for (var field : contextClass.fields()) {
+            Object value;
+            try {
+                value = field.get(ctx);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Could not access field '" + field.getName() + "' from node " + ctx);
+            }
+
+            if (value instanceof Token token) {
+                node.put(field.getName(), getText(token));
+            } else if (field.getType() != Token.class) {
+                node.putObject(field.getName(), toAttribute(value, ruleChildren));
+            }
+        }
+
+        for (var child : ruleChildren) {
+            node.add(child.node());
+        }
+        return node;
+    }
+
+    private String getText(Token token) {
+        return strings.computeIfAbsent(token.getText(), Function.identity());
+    }
+
+    private Object toAttribute(Object value, List<Built> ruleChildren) {
+        if (value instanceof Token token) {
+            return getText(token);
+        }
+
+        if (value instanceof List<?> list) {
+            return list.stream()
+                    .map(element -> toAttribute(element, ruleChildren))
+                    .collect(Collectors.toList());
+        }
+
+        if (value instanceof ParserRuleContext context) {
+            for (var child : ruleChildren) {
+                if (child.context() == context) {
+                    return child.node();
+                }
+            }
+        }
+
+        return value;
+    }
+
+    private static ContextClass getContextClass(Class<?> contextClass) {
+        List<String> hierarchy = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        for (var current = contextClass; current != ParserRuleContext.class; current = current.getSuperclass()) {
+            hierarchy.add(getKind(current));
+            for (var field : current.getDeclaredFields()) {
+                if (Modifier.isPublic(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+        }
+
+        var kind = Kind.fromString(getKind(contextClass));
+        if (!CompactJmmNode.getHierarchy(kind).equals(hierarchy)) {
+            throw new RuntimeException("Expected the hierarchy of " + kind + " to be "
+                    + CompactJmmNode.getHierarchy(kind) + ", the grammar gives " + hierarchy);
+        }
+        return new ContextClass(kind, fields);
+    }
+
+    private static String getKind(Class<?> contextClass) {
+        var className = contextClass.getSimpleName();
+        if (!className.endsWith("Context")) {
+            throw new RuntimeException("Expected classname to end with 'Context' " + className);
+        }
+        return className.substring(0, className.length() - "Context".length());
+    }
+}
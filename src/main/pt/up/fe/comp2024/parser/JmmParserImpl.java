@@ -1,15 +1,23 @@
 package pt.up.fe.comp2024.parser;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrToJmmNodeConverter;
+import pt.up.fe.comp.jmm.ast.antlr.JmmErrorListener;
+import pt.up.fe.comp.jmm.ast.antlr.JmmNodeCleanup;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 
-import java.util.Collections;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Copyright 2022 SPeCS.
@@ -31,26 +39,78 @@ public class JmmParserImpl implements JmmParser {
         return "program";
     }
 
+    /**
+     * Drops the parsing caches kept between parses, e.g. when a long-running compiler needs the memory back.
+     */
+    public static void clearCache() {
+        ReusableParser.clearCache();
+    }
+
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
 
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2024.JavammLexer(input);
-            // Wrap lexer around a token stream
-            var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2024.JavammParser(tokens);
+            var result = parseSll(jmmCode, startingRule, config);
+            if (result.isPresent()) {
+                return result.get();
+            }
 
+            // Reset the lexer and the parser of this thread for a full LL parse
+            var parser = ReusableParser.get(jmmCode);
 
             // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            return AntlrParser.parse(parser.getLexer(), parser.getParser(), startingRule, config);
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
         }
     }
+
+    /**
+     * Parses with SLL prediction, which is much faster than full LL on long expressions and gives the same tree for
+     * any input it accepts. It stops at the first error, leaving the full LL parse above to either accept the input or
+     * report its errors.
+     *
+     * @return the result, or nothing if the input has lexical errors or SLL could not parse it
+     */
+    private Optional<JmmParserResult> parseSll(String jmmCode, String startingRule, Map<String, String> config)
+            throws ReflectiveOperationException {
+
+        var reusable = ReusableParser.get(jmmCode);
+        var lexerListener = new JmmErrorListener(Stage.LEXICAL);
+        reusable.getLexer().addErrorListener(lexerListener);
+
+        var parser = reusable.getParser();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+        var builder = CompilerConfig.getParseTree(config) ? null : new JmmNodeBuilder(parser);
+        if (builder != null) {
+            parser.setBuildParseTree(false);
+            parser.addParseListener(builder);
+        }
+
+        ParseTree node;
+        try {
+            node = (ParseTree) parser.getClass().getMethod(startingRule).invoke(parser);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof ParseCancellationException) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+
+        if (!lexerListener.getReports().isEmpty()) {
+            return Optional.empty();
+        }
+
+        var root = builder != null ? builder.getRoot() : AntlrToJmmNodeConverter.convert(node, parser);
+        var ignoreList = AntlrParser.getIgnoreList(parser);
+        if (!ignoreList.isEmpty()) {
+            new JmmNodeCleanup(ignoreList).visit(root);
+        }
+
+        return Optional.of(new JmmParserResult(root, new ArrayList<>(), config));
+    }
 }
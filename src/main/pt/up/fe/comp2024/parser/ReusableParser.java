@@ -0,0 +1,85 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+
+/**
+ * A lexer and a parser for each thread, reset for every input instead of created again.
+ * <p>
+ * The prediction DFA that ANTLR builds while parsing is shared by all parsers of the grammar, so it stays warm from
+ * one file to the next. It only grows, so long-running compilers can drop it with {@link #clearCache()}.
+ */
+class ReusableParser {
+
+    private static final ThreadLocal<ReusableParser> INSTANCE = new ThreadLocal<>();
+
+    private final JavammLexer lexer;
+    private final JavammParser parser;
+
+    private ReusableParser(ANTLRInputStream input) {
+        // the parser reads the first token when it is created, so it needs an input from the start
+        lexer = new JavammLexer(input);
+        parser = new JavammParser(new CommonTokenStream(lexer));
+        lexer.removeErrorListeners();
+        parser.removeErrorListeners();
+    }
+
+    /**
+     * @return the parser of the current thread, reading the given code with the default settings
+     */
+    static ReusableParser get(String jmmCode) {
+        var input = new ANTLRInputStream(jmmCode);
+        var instance = INSTANCE.get();
+        if (instance == null) {
+            instance = new ReusableParser(input);
+            INSTANCE.set(instance);
+            return instance;
+        }
+
+        instance.reset(input);
+        return instance;
+    }
+
+    private void reset(ANTLRInputStream input) {
+        lexer.setInputStream(input);
+        lexer.removeErrorListeners();
+        // a token stream cannot be reused, it still believes it reached the end of the previous input
+        parser.setTokenStream(new CommonTokenStream(lexer));
+        // reset() keeps the state the previous parse ended in, the next root context would take it as the state
+        // that invoked it, and error recovery would follow it out of the rule
+        parser.setState(ATNState.INVALID_STATE_NUMBER);
+        parser.removeErrorListeners();
+        parser.removeParseListeners();
+        parser.setBuildParseTree(true);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+    }
+
+    JavammLexer getLexer() {
+        return lexer;
+    }
+
+    JavammParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Drops the prediction DFA shared by all lexers and parsers, and the instance of the current thread.
+     * <p>
+     * Must not be called while another thread is parsing.
+     */
+    static void clearCache() {
+        var instance = INSTANCE.get();
+        if (instance == null) {
+            instance = new ReusableParser(new ANTLRInputStream(""));
+        }
+        instance.lexer.getInterpreter().clearDFA();
+        instance.parser.getInterpreter().clearDFA();
+        INSTANCE.remove();
+    }
+}
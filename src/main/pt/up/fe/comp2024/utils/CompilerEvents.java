@@ -0,0 +1,90 @@
+package pt.up.fe.comp2024.utils;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events for the stages of the compiler, recorded with e.g.
+ * {@code -XX:StartFlightRecording=filename=compile.jfr}.
+ * <p>
+ * When no recording is running the events are disabled and cost next to nothing. Fields that are expensive to
+ * compute should only be filled in when {@link Event#shouldCommit()} holds.
+ */
+public class CompilerEvents {
+
+    private static final String CATEGORY = "Jmm Compiler";
+
+    private CompilerEvents() {
+    }
+
+    @Name("jmm.Parse")
+    @Label("Parse")
+    @Category(CATEGORY)
+    public static class Parse extends Event {
+        @Label("Source Length")
+        @DataAmount(DataAmount.BYTES)
+        public int sourceLength;
+    }
+
+    @Name("jmm.AnalysisPass")
+    @Label("Analysis Pass")
+    @Category(CATEGORY)
+    public static class AnalysisPass extends Event {
+        @Label("Pass")
+        public Class<?> passClass;
+
+        @Label("Reports")
+        public int reports;
+    }
+
+    @Name("jmm.OllirGen")
+    @Label("OLLIR Generation")
+    @Category(CATEGORY)
+    public static class OllirGen extends Event {
+        @Label("Class")
+        public String className;
+    }
+
+    @Name("jmm.RegisterAllocation")
+    @Label("Register Allocation")
+    @Category(CATEGORY)
+    public static class RegisterAllocation extends Event {
+        @Label("Method")
+        public String method;
+
+        @Label("Allocator")
+        public String allocator;
+
+        @Label("Variables")
+        public int variables;
+
+        @Label("Interference Edges")
+        @Description("Upper bound of the edges of the interference graph, each definition against what is live after it")
+        public long interferenceEdges;
+
+        @Label("Registers")
+        public int registers;
+    }
+
+    @Name("jmm.JasminGen")
+    @Label("Jasmin Generation")
+    @Category(CATEGORY)
+    public static class JasminGen extends Event {
+        @Label("Class")
+        public String className;
+
+        @Label("Class File")
+        @Description("Whether the class file was written directly instead of Jasmin code")
+        public boolean classFile;
+    }
+
+    @Name("jmm.MethodGen")
+    @Label("Method Generation")
+    @Category(CATEGORY)
+    public static class MethodGen extends Event {
+        @Label("Method")
+        public String method;
+
+        @Label("Instructions")
+        public int instructions;
+    }
+}
@@ -0,0 +1,130 @@
+package pt.up.fe.comp2024.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Wall time, CPU time and allocated bytes of the stages of a compilation.
+ * <p>
+ * CPU time and allocations are read from the {@link com.sun.management.ThreadMXBean} counters of the calling thread,
+ * so work handed to other threads, such as the parallel method generation of the backend, only shows in the wall
+ * time. Stages can be nested, e.g. the passes of the semantic analysis. A disabled instance runs the stages without
+ * measuring them.
+ */
+public class CompilerStats {
+
+    /**
+     * A measured stage, depth is the number of stages it is nested in. Counters the JVM does not support are -1.
+     */
+    public record Entry(String name, int depth, long wallNanos, long cpuNanos, long allocatedBytes) {
+    }
+
+    private final boolean enabled;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<Entry> entries = new ArrayList<>();
+    private int depth = 0;
+
+    public CompilerStats(boolean enabled) {
+        this.enabled = enabled;
+        this.threads = enabled ? getThreadMXBean() : null;
+    }
+
+    public static CompilerStats disabled() {
+        return new CompilerStats(false);
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threads.isCurrentThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        if (threads.isThreadAllocatedMemorySupported() && !threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        return threads;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public <T> T measure(String name, Supplier<T> stage) {
+        if (!enabled) {
+            return stage.get();
+        }
+
+        // reserve the place of the stage, so it comes before the stages nested in it
+        int index = entries.size();
+        entries.add(null);
+        int stageDepth = depth++;
+
+        long wall = System.nanoTime();
+        long cpu = getCpuTime();
+        long allocated = getAllocatedBytes();
+        try {
+            return stage.get();
+        } finally {
+            depth--;
+            entries.set(index, new Entry(name, stageDepth, System.nanoTime() - wall,
+                    cpu < 0 ? -1 : getCpuTime() - cpu,
+                    allocated < 0 ? -1 : getAllocatedBytes() - allocated));
+        }
+    }
+
+    public void measure(String name, Runnable stage) {
+        measure(name, () -> {
+            stage.run();
+            return null;
+        });
+    }
+
+    private long getCpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private long getAllocatedBytes() {
+        return threads.isThreadAllocatedMemorySupported() ? threads.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public String toTable() {
+        var table = new StringBuilder();
+        table.append(String.format("%-40s %12s %12s %14s%n", "Stage", "Wall (ms)", "CPU (ms)", "Alloc (KB)"));
+        for (var entry : entries) {
+            table.append(String.format("%-40s %12s %12s %14s%n",
+                    "  ".repeat(entry.depth()) + entry.name(),
+                    formatMillis(entry.wallNanos()),
+                    formatMillis(entry.cpuNanos()),
+                    entry.allocatedBytes() < 0 ? "-" : String.valueOf(entry.allocatedBytes() / 1024)));
+        }
+        return table.toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return nanos < 0 ? "-" : String.format("%.3f", nanos / 1_000_000.0);
+    }
+
+    public String toJson() {
+        var json = new StringBuilder("{\"stages\": [");
+        for (int i = 0; i < entries.size(); i++) {
+            var entry = entries.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append(String.format("  {\"name\": \"%s\", \"depth\": %d, \"wallNanos\": %d, \"cpuNanos\": %d, " +
+                            "\"allocatedBytes\": %d}",
+                    escapeJson(entry.name()), entry.depth(), entry.wallNanos(), entry.cpuNanos(),
+                    entry.allocatedBytes()));
+        }
+        json.append("\n]}\n");
+        return json.toString();
+    }
+
+    private static String escapeJson(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
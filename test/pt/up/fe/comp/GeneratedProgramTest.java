@@ -0,0 +1,61 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.specs.util.SpecsStrings;
+import utils.JmmProgramGenerator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles generated programs with different register allocation options, which must not change what the programs
+ * print.
+ */
+public class GeneratedProgramTest {
+
+    private static final List<Long> SEEDS = List.of(1L, 2L, 3L);
+    private static final JmmProgramGenerator.Shape SHAPE = JmmProgramGenerator.Shape.DEFAULT
+            .withMethods(4)
+            .withStatements(40);
+
+    private static String compileAndRun(String code, Map<String, String> config) {
+        var ollirResult = TestUtils.optimize(code, config);
+        assertTrue("Errors compiling with " + config + ": " + ollirResult.getReports(), ollirResult.getReports()
+                .stream().noneMatch(report -> report.getType() == ReportType.ERROR));
+
+        var jasminResult = TestUtils.backend(ollirResult);
+        TestUtils.noErrors(jasminResult);
+        return SpecsStrings.normalizeFileContents(jasminResult.run()).strip();
+    }
+
+    private static Map<String, String> config(String... options) {
+        Map<String, String> config = new HashMap<>();
+        for (int i = 0; i < options.length; i += 2) {
+            config.put(options[i], options[i + 1]);
+        }
+        return config;
+    }
+
+    @Test
+    public void optionsKeepOutput() {
+        var configs = List.of(
+                config("registerAllocation", "0"),
+                config("registerAllocation", "3"),
+                config("registerAllocation", "0", "registerAllocator", "linear"),
+                config("registerAllocation", "3", "registerAllocator", "linear"));
+
+        for (long seed : SEEDS) {
+            var code = JmmProgramGenerator.generate(seed, SHAPE);
+            var expected = compileAndRun(code, config());
+            assertEquals("Lines printed by seed " + seed, SHAPE.methods(), expected.lines().count());
+
+            for (var config : configs) {
+                assertEquals("Output of seed " + seed + " with " + config, expected, compileAndRun(code, config));
+            }
+        }
+    }
+}
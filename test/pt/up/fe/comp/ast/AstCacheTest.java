@@ -0,0 +1,96 @@
+package pt.up.fe.comp.ast;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.parser.CompactJmmNodeTest;
+import pt.up.fe.comp2024.ast.AstCache;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AstCacheTest {
+
+    private static final List<String> PROGRAMS = List.of(
+            "pt/up/fe/comp/optimization/RegAlloc.jmm",
+            "pt/up/fe/comp/cp2/apps/Simple.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm",
+            "pt/up/fe/comp/optimization/ParenthesizedArrayArgument.jmm");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static JmmSemanticsResult analyse(String code, Map<String, String> config) {
+        var semanticsResult = TestUtils.analyse(TestUtils.parse(code, config));
+        TestUtils.noErrors(semanticsResult.getReports());
+        return semanticsResult;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        for (String resource : PROGRAMS) {
+            var code = SpecsIo.getResource(resource);
+            var expected = analyse(code, new HashMap<>());
+            var file = folder.newFile();
+
+            AstCache.write(file, code, expected);
+            var actual = AstCache.read(file, code, new HashMap<>()).orElseThrow(
+                    () -> new AssertionError("Could not read back the cache of " + resource));
+
+            assertEquals(resource, expected.getRootNode().toTree(), actual.getRootNode().toTree());
+            CompactJmmNodeTest.assertSameTree(expected.getRootNode(), actual.getRootNode());
+            assertEquals(resource, expected.getSymbolTable().print(), actual.getSymbolTable().print());
+        }
+    }
+
+    @Test
+    public void otherCodeOrOptions() throws IOException {
+        var code = SpecsIo.getResource(PROGRAMS.get(0));
+        var file = folder.newFile();
+        AstCache.write(file, code, analyse(code, new HashMap<>()));
+
+        assertTrue(AstCache.read(file, code + " ", new HashMap<>()).isEmpty());
+
+        Map<String, String> parseTreeConfig = new HashMap<>();
+        parseTreeConfig.put("parseTree", "true");
+        assertTrue(AstCache.read(file, code, parseTreeConfig).isEmpty());
+
+        // options that do not change the AST do not matter
+        Map<String, String> optimizeConfig = new HashMap<>();
+        optimizeConfig.put("optimize", "true");
+        optimizeConfig.put("registerAllocation", "2");
+        assertTrue(AstCache.read(file, code, optimizeConfig).isPresent());
+    }
+
+    @Test
+    public void damagedCache() throws IOException {
+        var code = SpecsIo.getResource(PROGRAMS.get(0));
+        var file = folder.newFile();
+        AstCache.write(file, code, analyse(code, new HashMap<>()));
+
+        var bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        assertTrue(AstCache.read(file, code, new HashMap<>()).isEmpty());
+
+        assertTrue(AstCache.read(new File(folder.getRoot(), "missing"), code, new HashMap<>()).isEmpty());
+    }
+
+    @Test
+    public void writeFailureDoesNotThrow() {
+        var code = SpecsIo.getResource(PROGRAMS.get(0));
+        var file = new File(new File(folder.getRoot(), "missing"), "ast");
+
+        AstCache.write(file, code, analyse(code, new HashMap<>()));
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp.backend;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BranchFusionTest {
+
+    private static JasminResult jasminResult;
+
+    @BeforeClass
+    public static void compile() {
+        jasminResult = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/backend/Branches.jmm"));
+    }
+
+    static void assertFind(String regex, String code) {
+        assertTrue("Expected '" + regex + "' in\n" + code, Pattern.compile(regex).matcher(code).find());
+    }
+
+    @Test
+    public void relationalConditions() {
+        var count = CpUtils.getJasminMethod(jasminResult, "count");
+
+        // both operands are compared by the branch itself, the loop exits on the inverted condition
+        assertFind("iload_2\\s+iload_1\\s+if_icmpge\\s+\\w+", count);
+        assertFind("iload_2\\s+iconst_3\\s+if_icmplt\\s+\\w+", count);
+
+        // no boolean is pushed and tested again
+        assertFalse("Expected no isub in\n" + count, count.contains("isub"));
+        assertFalse("Expected no boolean branch in\n" + count,
+                Pattern.compile("\\sif(eq|ne|lt|ge)\\s").matcher(count).find());
+        assertFalse("Expected no boolean constant in\n" + count,
+                Pattern.compile("iconst_[01]\\s+goto").matcher(count).find());
+    }
+
+    @Test
+    public void booleanCondition() {
+        var flag = CpUtils.getJasminMethod(jasminResult, "flag");
+        assertFind("iload_1\\s+ifne\\s+\\w+", flag);
+    }
+
+    @Test
+    public void relationalValue() {
+        // a comparison used as a value still needs its 0 or 1
+        var less = CpUtils.getJasminMethod(jasminResult, "less");
+        assertFind("if_icmpge\\s+\\w+\\s+iconst_1\\s+goto\\s+\\w+\\s+\\w+:\\s+iconst_0", less);
+    }
+
+    @Test
+    public void output() {
+        assertEquals("8\n4\n-4\n1\n0", SpecsStrings.normalizeFileContents(jasminResult.run()).strip());
+    }
+}
@@ -0,0 +1,133 @@
+package pt.up.fe.comp.backend;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.backend.ClassFileWriter;
+import pt.up.fe.comp2024.backend.JasminClass;
+import pt.up.fe.comp2024.backend.JasminMethod;
+import pt.up.fe.comp2024.backend.Opcode;
+import pt.up.fe.comp2024.backend.StackAnalysis;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClassFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String RESOURCE = "pt/up/fe/comp/backend/ClassFileFrames.jmm";
+    private static final String EXPECTED_OUTPUT = "6\n17\n6\n21\n4\n2";
+
+    /**
+     * Defines a single class from its bytes, so the JVM verifies it against its StackMapTable when it is initialized.
+     */
+    static class ClassBytesLoader extends ClassLoader {
+
+        ClassBytesLoader() {
+            super(ClassFileTest.class.getClassLoader());
+        }
+
+        Class<?> load(String name, byte[] classBytes) throws ClassNotFoundException {
+            defineClass(name, classBytes, 0, classBytes.length);
+            return Class.forName(name, true, this);
+        }
+    }
+
+    static ClassFileResult compile(Map<String, String> config) {
+        var result = TestUtils.backend(SpecsIo.getResource(RESOURCE), config);
+        assertTrue("Expected a class file result, got " + result.getClass(), result instanceof ClassFileResult);
+        return (ClassFileResult) result;
+    }
+
+    static String run(JasminResult result) {
+        return SpecsStrings.normalizeFileContents(result.run()).strip();
+    }
+
+    /**
+     * @return a method of a loaded class, which can be called even if the class is not public
+     */
+    static Method getMethod(Class<?> loaded, String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        var method = loaded.getMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return method;
+    }
+
+    @Test
+    public void sameOutputAsJasmin() {
+        var jasminOutput = run(TestUtils.backend(SpecsIo.getResource(RESOURCE)));
+        assertEquals(EXPECTED_OUTPUT, jasminOutput);
+
+        assertEquals(jasminOutput, run(compile(Map.of("classFile", "true"))));
+        assertEquals(jasminOutput, run(compile(Map.of("classFile", "true", "registerAllocation", "0"))));
+    }
+
+    @Test
+    public void sameClassModifiers() throws Exception {
+        // the OLLIR class has default access, so neither path may make it public
+        var jasminFile = TestUtils.backend(SpecsIo.getResource(RESOURCE)).compile(folder.newFolder("jasmin"));
+        var result = compile(Map.of("classFile", "true"));
+
+        var fromJasmin = new ClassBytesLoader().load(result.getClassName(), Files.readAllBytes(jasminFile.toPath()));
+        var fromClassFile = new ClassBytesLoader().load(result.getClassName(), result.getClassBytes());
+        assertEquals(0, fromJasmin.getModifiers());
+        assertEquals(fromJasmin.getModifiers(), fromClassFile.getModifiers());
+    }
+
+    @Test
+    public void verifies() throws Exception {
+        for (var config : List.of(Map.of("classFile", "true"),
+                Map.of("classFile", "true", "registerAllocation", "0"))) {
+            var result = compile(config);
+            var loaded = new ClassBytesLoader().load(result.getClassName(), result.getClassBytes());
+
+            // branches with a reference assigned on each path, and loops over an array
+            var constructor = loaded.getConstructor();
+            constructor.setAccessible(true);
+            var instance = constructor.newInstance();
+            var choose = getMethod(loaded, "choose", boolean.class, int.class);
+            assertEquals(instance, choose.invoke(instance, true, 1));
+            assertEquals(loaded, choose.invoke(instance, false, 1).getClass());
+            assertEquals(21, getMethod(loaded, "loop", int.class).invoke(instance, 7));
+            assertEquals(4, getMethod(loaded, "partial", boolean.class, int.class).invoke(instance, true, 3));
+            assertEquals(2, getMethod(loaded, "partial", boolean.class, int.class).invoke(instance, false, 3));
+        }
+    }
+
+    @Test
+    public void labelsAtSameOffset() throws Exception {
+        // A is reached with a String in local 1, B also from the goto with an int, so only B's frame is valid there
+        var method = new JasminMethod(List.of("public", "static"), "labels", "(I)I");
+        method.add(Opcode.LDC, "s");
+        method.add(Opcode.ASTORE, 1, "Ljava/lang/String;");
+        method.add(Opcode.ILOAD, 0);
+        method.add(Opcode.IFEQ, "A");
+        method.add(Opcode.ICONST, 0);
+        method.add(Opcode.ISTORE, 1);
+        method.add(Opcode.GOTO, "B");
+        method.addLabel("A");
+        method.addLabel("B");
+        method.add(Opcode.ILOAD, 0);
+        method.add(Opcode.IRETURN);
+        method.setMaxStack(StackAnalysis.getMaxStack(method));
+        method.setMaxLocals(2);
+
+        var jasminClass = new JasminClass(List.of("public"), "Labels", "java/lang/Object");
+        jasminClass.getMethods().add(method);
+        var loaded = new ClassBytesLoader().load("Labels", new ClassFileWriter(jasminClass).write());
+
+        assertEquals(0, loaded.getMethod("labels", int.class).invoke(null, 0));
+        assertEquals(1, loaded.getMethod("labels", int.class).invoke(null, 1));
+    }
+}
@@ -0,0 +1,40 @@
+package pt.up.fe.comp.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.backend.ClassNameResolver;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClassNameResolverTest {
+
+    @Test
+    public void suffixDoesNotMatch() {
+        var classNames = new ClassNameResolver(List.of("foo.FooBar"));
+        assertEquals("Bar", classNames.getInternalName("Bar"));
+    }
+
+    @Test
+    public void exactSimpleName() {
+        var classNames = new ClassNameResolver(List.of("foo.FooBar", "a.b.Bar", "io"));
+        assertEquals("a/b/Bar", classNames.getInternalName("Bar"));
+        assertEquals("foo/FooBar", classNames.getInternalName("FooBar"));
+        assertEquals("io", classNames.getInternalName("io"));
+    }
+
+    @Test
+    public void unknownName() {
+        // names that are not imported are used as they are, with dots as slashes
+        var classNames = new ClassNameResolver(List.of("foo.FooBar"));
+        assertEquals("Baz", classNames.getInternalName("Baz"));
+        assertEquals("java/lang/String", classNames.getInternalName("java.lang.String"));
+    }
+
+    @Test
+    public void descriptor() {
+        var classNames = new ClassNameResolver(List.of("foo.FooBar"));
+        assertEquals("Lfoo/FooBar;", classNames.getDescriptor("FooBar"));
+        assertEquals("LBar;", classNames.getDescriptor("Bar"));
+    }
+}
@@ -0,0 +1,57 @@
+package pt.up.fe.comp.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.backend.JasminInstruction;
+import pt.up.fe.comp2024.backend.JasminMethod;
+import pt.up.fe.comp2024.backend.Opcode;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static pt.up.fe.comp2024.backend.JasminInstruction.label;
+import static pt.up.fe.comp2024.backend.JasminInstruction.of;
+
+public class JasminInstructionTest {
+
+    @Test
+    public void shortForms() {
+        assertEquals("iconst_m1", of(Opcode.ICONST, -1).toString());
+        assertEquals("iconst_5", of(Opcode.ICONST, 5).toString());
+        assertEquals("iload_3", of(Opcode.ILOAD, 3).toString());
+        assertEquals("istore 4", of(Opcode.ISTORE, 4).toString());
+        assertEquals("aload_0", of(Opcode.ALOAD, 0).toString());
+        assertEquals("iinc 2 -1", of(Opcode.IINC, 2, -1).toString());
+        assertEquals("L:", label("L").toString());
+    }
+
+    @Test
+    public void memberReferences() {
+        assertEquals("getfield A/x I", of(Opcode.GETFIELD, "A", "x", "I").toString());
+        assertEquals("invokevirtual A/f(II)I", of(Opcode.INVOKEVIRTUAL, "A", "f", "(II)I").toString());
+        assertEquals("invokestatic io/println(I)V", of(Opcode.INVOKESTATIC, "io", "println", "(I)V").toString());
+    }
+
+    @Test
+    public void invocationStackEffect() {
+        // pops the receiver and the arguments, pushes the result
+        assertEquals(-2, of(Opcode.INVOKEVIRTUAL, "A", "f", "(II)I").getStackEffect());
+        assertEquals(-3, of(Opcode.INVOKEVIRTUAL, "A", "f", "([ILA;)V").getStackEffect());
+        assertEquals(-1, of(Opcode.INVOKESTATIC, "io", "println", "(I)V").getStackEffect());
+        assertEquals(1, of(Opcode.INVOKESTATIC, "A", "read", "()I").getStackEffect());
+        assertEquals(-1, of(Opcode.INVOKESPECIAL, "java/lang/Object", "<init>", "()V").getStackEffect());
+    }
+
+    @Test
+    public void methodCode() {
+        var method = new JasminMethod(List.of("public", "static"), "id", "(I)I");
+        method.add(Opcode.ILOAD, 0);
+        method.add(Opcode.IRETURN);
+        method.setMaxStack(1);
+        method.setMaxLocals(1);
+
+        var code = new StringBuilder();
+        method.appendTo(code);
+        assertEquals("\n.method public static id(I)I\n   iload_0\n   ireturn\n   .limit stack 1\n   .limit locals 1\n"
+                + ".end method\n", code.toString());
+    }
+}
@@ -0,0 +1,67 @@
+package pt.up.fe.comp.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import utils.JmmProgramGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Methods are generated in parallel, which must give the same code, in the same order, as generating them one at a
+ * time.
+ */
+public class ParallelGenerationTest {
+
+    private static final JmmProgramGenerator.Shape SHAPE = JmmProgramGenerator.Shape.DEFAULT
+            .withMethods(40)
+            .withStatements(40);
+    private static final int RUNS = 5;
+
+    private static final Pattern METHOD_NAME = Pattern.compile("^\\.method .*?(\\S+)\\(", Pattern.MULTILINE);
+
+    static String generate(OllirResult ollirResult) {
+        return TestUtils.backend(ollirResult).getJasminCode();
+    }
+
+    static List<String> getMethodNames(String jasminCode) {
+        return METHOD_NAME.matcher(jasminCode).results().map(result -> result.group(1)).toList();
+    }
+
+    @Test
+    public void sameAsSequential() throws Exception {
+        // OLLIR labels are numbered across compilations, so the backend always starts from the same OLLIR
+        var ollirResult = TestUtils.optimize(JmmProgramGenerator.generate(1, SHAPE));
+
+        // a parallel stream started inside a pool runs on that pool, so one worker generates the methods in order
+        var pool = new ForkJoinPool(1);
+        String sequential;
+        try {
+            sequential = pool.submit(() -> generate(ollirResult)).get();
+        } finally {
+            pool.shutdown();
+        }
+
+        // labels such as cmp_N are numbered per method, and differ if methods share state
+        assertTrue(sequential.contains("cmp_"));
+
+        // the default constructor comes first, then the other methods as declared
+        var declared = new ArrayList<>(List.of("<init>"));
+        ollirResult.getOllirClass().getMethods().stream()
+                .filter(method -> !method.isConstructMethod())
+                .forEach(method -> declared.add(method.getMethodName()));
+        assertEquals(declared, getMethodNames(sequential));
+
+        for (int i = 0; i < RUNS; i++) {
+            var parallel = generate(ollirResult);
+            assertEquals(declared, getMethodNames(parallel));
+            assertEquals(sequential, parallel);
+        }
+    }
+}
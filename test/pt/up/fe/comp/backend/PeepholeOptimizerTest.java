@@ -0,0 +1,103 @@
+package pt.up.fe.comp.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.backend.JasminInstruction;
+import pt.up.fe.comp2024.backend.JasminMethod;
+import pt.up.fe.comp2024.backend.Opcode;
+import pt.up.fe.comp2024.backend.PeepholeOptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static pt.up.fe.comp2024.backend.JasminInstruction.label;
+import static pt.up.fe.comp2024.backend.JasminInstruction.of;
+
+public class PeepholeOptimizerTest {
+
+    static void assertOptimized(List<JasminInstruction> before, String... after) {
+        var method = new JasminMethod(List.of("public"), "test", "(I)I");
+        method.setInstructions(new ArrayList<>(before));
+        PeepholeOptimizer.optimize(method);
+
+        var optimized = method.getInstructions().stream().map(JasminInstruction::toString).toList();
+        assertEquals(List.of(after), optimized);
+    }
+
+    @Test
+    public void unreferencedLabel() {
+        assertOptimized(List.of(label("L"), of(Opcode.ICONST, 1), of(Opcode.IRETURN)),
+                "iconst_1", "ireturn");
+    }
+
+    @Test
+    public void referencedLabel() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.IFEQ, "L"), of(Opcode.ICONST, 1), of(Opcode.IRETURN),
+                        label("L"), of(Opcode.ICONST, 0), of(Opcode.IRETURN)),
+                "iload_1", "ifeq L", "iconst_1", "ireturn", "L:", "iconst_0", "ireturn");
+    }
+
+    @Test
+    public void loadStoreSameLocal() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 2), of(Opcode.ISTORE, 2), of(Opcode.ILOAD, 1), of(Opcode.IRETURN)),
+                "iload_1", "ireturn");
+    }
+
+    @Test
+    public void storeLoadSameLocal() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.ISTORE, 2), of(Opcode.ILOAD, 2), of(Opcode.IRETURN)),
+                "iload_1", "dup", "istore_2", "ireturn");
+    }
+
+    @Test
+    public void storeLoadOtherLocal() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.ISTORE, 2), of(Opcode.ILOAD, 3), of(Opcode.IRETURN)),
+                "iload_1", "istore_2", "iload_3", "ireturn");
+    }
+
+    @Test
+    public void duplicatedStoreSameLocal() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.DUP), of(Opcode.ISTORE, 2), of(Opcode.ISTORE, 2),
+                        of(Opcode.ILOAD, 2), of(Opcode.IRETURN)),
+                "iload_1", "dup", "istore_2", "ireturn");
+    }
+
+    @Test
+    public void pushPop() {
+        assertOptimized(List.of(of(Opcode.ICONST, 5), of(Opcode.POP), of(Opcode.ILOAD, 1), of(Opcode.IRETURN)),
+                "iload_1", "ireturn");
+    }
+
+    @Test
+    public void identityOperations() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.ICONST, 0), of(Opcode.IADD), of(Opcode.ICONST, 1),
+                        of(Opcode.IMUL), of(Opcode.ICONST, 0), of(Opcode.ISUB), of(Opcode.ICONST, 1), of(Opcode.IDIV),
+                        of(Opcode.IRETURN)),
+                "iload_1", "ireturn");
+    }
+
+    @Test
+    public void nonIdentityOperation() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.ICONST, 0), of(Opcode.IMUL), of(Opcode.IRETURN)),
+                "iload_1", "iconst_0", "imul", "ireturn");
+    }
+
+    @Test
+    public void unreachableAfterJump() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.IRETURN), of(Opcode.ICONST, 2), of(Opcode.IRETURN)),
+                "iload_1", "ireturn");
+    }
+
+    @Test
+    public void gotoNextLabel() {
+        assertOptimized(List.of(of(Opcode.GOTO, "L"), label("L"), of(Opcode.ILOAD, 1), of(Opcode.IRETURN)),
+                "iload_1", "ireturn");
+    }
+
+    @Test
+    public void branchOverGoto() {
+        assertOptimized(List.of(of(Opcode.ILOAD, 1), of(Opcode.IFEQ, "L1"), of(Opcode.GOTO, "L2"), label("L1"),
+                        of(Opcode.ICONST, 1), of(Opcode.IRETURN), label("L2"), of(Opcode.ICONST, 0), of(Opcode.IRETURN)),
+                "iload_1", "ifne L2", "iconst_1", "ireturn", "L2:", "iconst_0", "ireturn");
+    }
+}
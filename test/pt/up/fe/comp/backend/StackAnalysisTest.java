@@ -0,0 +1,85 @@
+package pt.up.fe.comp.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.backend.JasminMethod;
+import pt.up.fe.comp2024.backend.Opcode;
+import pt.up.fe.comp2024.backend.StackAnalysis;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StackAnalysisTest {
+
+    static JasminMethod method(String descriptor) {
+        return new JasminMethod(List.of("public"), "test", descriptor);
+    }
+
+    @Test
+    public void nestedCalls() {
+        // this.f(this.f(1, this.g(2, 3)), 4) evaluated in place
+        var method = method("()I");
+        method.add(Opcode.ALOAD, 0);
+        method.add(Opcode.ALOAD, 0);
+        method.add(Opcode.ICONST, 1);
+        method.add(Opcode.ALOAD, 0);
+        method.add(Opcode.ICONST, 2);
+        method.add(Opcode.ICONST, 3);
+        method.add(Opcode.INVOKEVIRTUAL, "C", "g", "(II)I");
+        method.add(Opcode.INVOKEVIRTUAL, "C", "f", "(II)I");
+        method.add(Opcode.ICONST, 4);
+        method.add(Opcode.INVOKEVIRTUAL, "C", "f", "(II)I");
+        method.add(Opcode.IRETURN);
+
+        assertEquals(6, StackAnalysis.getMaxStack(method));
+    }
+
+    @Test
+    public void branches() {
+        // the deeper of the two paths counts, and both reach the join with one value
+        var method = method("(I)I");
+        method.add(Opcode.ILOAD, 1);
+        method.add(Opcode.IFEQ, "else");
+        method.add(Opcode.ICONST, 1);
+        method.add(Opcode.ICONST, 2);
+        method.add(Opcode.ICONST, 3);
+        method.add(Opcode.IADD);
+        method.add(Opcode.IADD);
+        method.add(Opcode.GOTO, "end");
+        method.addLabel("else");
+        method.add(Opcode.ICONST, 0);
+        method.addLabel("end");
+        method.add(Opcode.IRETURN);
+
+        assertEquals(3, StackAnalysis.getMaxStack(method));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void inconsistentDepth() {
+        var method = method("(I)I");
+        method.add(Opcode.ICONST, 1);
+        method.add(Opcode.ILOAD, 1);
+        method.add(Opcode.IFEQ, "end");
+        method.add(Opcode.ICONST, 2);
+        method.addLabel("end");
+        method.add(Opcode.IRETURN);
+
+        StackAnalysis.getMaxStack(method);
+    }
+
+    @Test
+    public void compiledNestedCalls() {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/backend/NestedCalls.jmm"));
+
+        // OLLIR stores each inner result in a temporary, so at most the receiver and two arguments are on the stack
+        var nested = CpUtils.getJasminMethod(jasminResult, "nested");
+        assertTrue("Expected .limit stack 3 in\n" + nested, nested.contains(".limit stack 3"));
+
+        assertEquals("-9", SpecsStrings.normalizeFileContents(jasminResult.run()).strip());
+    }
+}
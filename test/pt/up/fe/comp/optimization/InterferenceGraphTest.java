@@ -0,0 +1,55 @@
+package pt.up.fe.comp.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.optimization.InterferenceGraph;
+import pt.up.fe.comp2024.optimization.RegisterAllocation;
+
+import static org.junit.Assert.*;
+
+public class InterferenceGraphTest {
+
+    @Test
+    public void edges() {
+        var graph = new InterferenceGraph(5000);
+        graph.addEdge(4999, 4998);
+        graph.addEdge(4998, 4999);
+        graph.addEdge(4999, 0);
+
+        assertTrue(graph.interferes(4998, 4999));
+        assertTrue(graph.interferes(0, 4999));
+        assertFalse(graph.interferes(0, 4998));
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(2, graph.getDegree(4999));
+    }
+
+    @Test
+    public void merge() {
+        var graph = new InterferenceGraph(4);
+        graph.addEdge(0, 1);
+        graph.addEdge(2, 3);
+        graph.merge(0, 2);
+
+        assertTrue(graph.interferes(0, 3));
+        assertFalse(graph.interferes(2, 3));
+        assertFalse(graph.hasNode(2));
+        assertEquals(2, graph.getEdgeCount());
+    }
+
+    @Test
+    public void matrixIndexFitsInt() {
+        assertTrue(InterferenceGraph.getMatrixBits(InterferenceGraph.MAX_SIZE) <= Integer.MAX_VALUE);
+        assertTrue(InterferenceGraph.getMatrixBits(InterferenceGraph.MAX_SIZE + 1) > Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyVariables() {
+        new InterferenceGraph(InterferenceGraph.MAX_SIZE + 1);
+    }
+
+    @Test
+    public void matrixBudgetBelowMaxSize() {
+        // methods with more variables fall back to linear scan before the graph could overflow
+        assertTrue(InterferenceGraph.getMatrixBits(InterferenceGraph.MAX_SIZE)
+                > RegisterAllocation.MATRIX_SIZE_THRESHOLD);
+    }
+}
@@ -0,0 +1,82 @@
+package pt.up.fe.comp.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.BitSets;
+import pt.up.fe.comp2024.optimization.LivenessAnalysis;
+import pt.up.fe.comp2024.optimization.VarIndex;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LivenessTest {
+
+    static LivenessAnalysis getLiveness(String methodName) {
+        var ollirResult = new OllirResult(SpecsIo.getResource("pt/up/fe/comp/optimization/Liveness.ollir"),
+                Collections.emptyMap());
+        ollirResult.getOllirClass().buildCFGs();
+        Method method = ollirResult.getOllirClass().getMethods().stream()
+                .filter(m -> m.getMethodName().equals(methodName))
+                .findFirst()
+                .orElseThrow();
+
+        var liveness = new LivenessAnalysis(method, new VarIndex(method));
+        liveness.solve();
+        return liveness;
+    }
+
+    static Set<String> toNames(long[] bits, VarIndex vars) {
+        var names = new TreeSet<String>();
+        for (int i = 0; i < vars.size(); i++) {
+            if (BitSets.get(bits, i)) {
+                names.add(vars.nameOf(i));
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void loop() {
+        var liveness = getLiveness("loop");
+        var vars = liveness.getVars();
+        var instructions = liveness.getInstructions();
+        var exit = instructions.get(4);
+        var body = instructions.get(5);
+        var backBranch = instructions.get(7);
+        var ret = instructions.get(8);
+
+        // the values of the loop reach the next iteration through the back edge
+        assertEquals(Set.of("i", "n", "s"), toNames(liveness.getOut(backBranch), vars));
+        assertEquals(Set.of("i", "n", "s"), toNames(liveness.getIn(body), vars));
+        assertEquals(Set.of("s"), toNames(liveness.getIn(exit), vars));
+        assertEquals(Set.of("s"), toNames(liveness.getIn(ret), vars));
+
+        // t is written, but never read
+        assertEquals(Set.of("t"), toNames(liveness.getDefs(instructions.get(2)), vars));
+        for (var instruction : instructions) {
+            assertFalse(toNames(liveness.getOut(instruction), vars).contains("t"));
+        }
+    }
+
+    @Test
+    public void branch() {
+        var liveness = getLiveness("branch");
+        var vars = liveness.getVars();
+        var instructions = liveness.getInstructions();
+        var condition = instructions.get(2);
+        var elseAssign = instructions.get(3);
+        var thenAssign = instructions.get(5);
+
+        // each side reads a different variable, both are live before the branch
+        assertEquals(Set.of("x", "y"), toNames(liveness.getOut(condition), vars));
+        assertEquals(Set.of("y"), toNames(liveness.getIn(elseAssign), vars));
+        assertEquals(Set.of("x"), toNames(liveness.getIn(thenAssign), vars));
+        assertEquals(Set.of("r"), toNames(liveness.getIn(instructions.get(6)), vars));
+    }
+}
@@ -0,0 +1,42 @@
+package pt.up.fe.comp.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class OllirGenerationTest {
+
+    @Test
+    public void parenthesizedArrayArgument() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/optimization/ParenthesizedArrayArgument.jmm");
+        var ollirResult = TestUtils.optimize(code);
+
+        // OLLIR does not accept array elements as call arguments, with or without parentheses
+        var calls = ollirResult.getOllirClass().getMethods().stream()
+                .flatMap(method -> method.getInstructions().stream())
+                .flatMap(inst -> inst instanceof AssignInstruction assign ? Stream.of(inst, assign.getRhs())
+                        : Stream.of(inst))
+                .filter(inst -> inst instanceof CallInstruction)
+                .map(CallInstruction.class::cast)
+                .filter(call -> call.getInvocationType() == CallType.invokevirtual
+                        || call.getInvocationType() == CallType.invokestatic)
+                .toList();
+        assertEquals("Expected the calls to foo and println", 2, calls.size());
+
+        for (var call : calls) {
+            for (var argument : call.getArguments()) {
+                assertFalse("Array element passed directly to " + call.getInvocationType(),
+                        argument instanceof ArrayOperand);
+            }
+        }
+
+        assertEquals("5", SpecsStrings.normalizeFileContents(TestUtils.backend(ollirResult).run()).strip());
+    }
+}
@@ -0,0 +1,130 @@
+package pt.up.fe.comp.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class RegisterAllocationTest {
+
+    private static final String RESOURCE = "pt/up/fe/comp/optimization/RegAlloc.jmm";
+    private static final String EXPECTED_OUTPUT = "26\n-15\n10\n10";
+
+    static OllirResult getOllirResult(int registers, String allocator) {
+        Map<String, String> config = new HashMap<>();
+        config.put("registerAllocation", String.valueOf(registers));
+        if (allocator != null) {
+            config.put("registerAllocator", allocator);
+        }
+        return TestUtils.optimize(SpecsIo.getResource(RESOURCE), config);
+    }
+
+    static Method getMethod(OllirResult ollirResult, String methodName) {
+        return ollirResult.getOllirClass().getMethods().stream()
+                .filter(method -> method.getMethodName().equals(methodName))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    static int getRegister(OllirResult ollirResult, String methodName, String variable) {
+        return getMethod(ollirResult, methodName).getVarTable().get(variable).getVirtualReg();
+    }
+
+    /**
+     * Generates, runs and checks the output of the program.
+     */
+    static JasminResult run(OllirResult ollirResult) {
+        var jasminResult = TestUtils.backend(ollirResult);
+        var output = SpecsStrings.normalizeFileContents(jasminResult.run()).strip();
+        assertEquals("Output of the program allocated with\n" + ollirResult.getOllirCode(), EXPECTED_OUTPUT, output);
+        return jasminResult;
+    }
+
+    @Test
+    public void spillWarnsInsteadOfFailing() {
+        // 'this' and n take two of the three registers, a to d cannot share the one left
+        var ollirResult = getOllirResult(3, null);
+
+        var warnings = ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.WARNING)
+                .filter(report -> report.getMessage().contains("'spill'"))
+                .toList();
+        assertEquals("Expected a warning for the spilled method: " + ollirResult.getReports(), 1, warnings.size());
+        assertTrue(getRegister(ollirResult, "spill", "a") >= 3 || getRegister(ollirResult, "spill", "b") >= 3);
+
+        run(ollirResult);
+    }
+
+    @Test
+    public void coalescingRemovesMove() {
+        var ollirResult = getOllirResult(0, null);
+
+        // b := a is the only use of a, sharing a register turns the copy into a no-op
+        assertEquals(getRegister(ollirResult, "copy", "a"), getRegister(ollirResult, "copy", "b"));
+
+        var copy = CpUtils.getJasminMethod(run(ollirResult), "copy");
+        // one store for n + 1 and one for the product, b := a leaves none
+        assertEquals("Expected the copy to b to be removed in\n" + copy, 2, countStores(copy));
+    }
+
+    static long countStores(String jasminMethod) {
+        return Pattern.compile("[ia]store(_\\d+|\\s+\\d+)").matcher(jasminMethod).results().count();
+    }
+
+    @Test
+    public void linearScan() {
+        var ollirResult = getOllirResult(0, "linear");
+
+        // i, s and n are live together around the loop, t while its value is added
+        var loopRegisters = Stream.of("i", "s", "t")
+                .map(variable -> getRegister(ollirResult, "loop", variable))
+                .collect(Collectors.toSet());
+        assertEquals(3, loopRegisters.size());
+        assertFalse(loopRegisters.contains(getRegister(ollirResult, "loop", "n")));
+
+        run(ollirResult);
+    }
+
+    @Test
+    public void linearScanSpill() {
+        var ollirResult = getOllirResult(3, "linear");
+
+        assertTrue("Expected a warning for the spilled method: " + ollirResult.getReports(),
+                ollirResult.getReports().stream().anyMatch(report -> report.getType() == ReportType.WARNING
+                        && report.getMessage().contains("'spill'")));
+
+        run(ollirResult);
+    }
+
+    @Test
+    public void parametersKeepTheirSlots() {
+        // 1 register is less than 'this' and the two parameters need, so the locals spill above them
+        for (String allocator : new String[]{"graph", "linear"}) {
+            for (int registers : new int[]{0, 1}) {
+                var ollirResult = getOllirResult(registers, allocator);
+                var message = allocator + " with -r=" + registers;
+
+                // slot 0 stays 'this', which params never reads
+                assertEquals(message, 1, getRegister(ollirResult, "params", "p"));
+                assertEquals(message, 2, getRegister(ollirResult, "params", "q"));
+                assertTrue(message, getRegister(ollirResult, "params", "x") >= 3);
+                assertEquals(message, 0, getRegister(ollirResult, "main", "args"));
+
+                run(ollirResult);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package pt.up.fe.comp.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class CompactJmmNodeTest {
+
+    private static final List<String> PROGRAMS = List.of(
+            "pt/up/fe/comp/optimization/RegAlloc.jmm",
+            "pt/up/fe/comp/cp2/apps/Simple.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm");
+
+    private static JmmNode newImpl(Kind kind) {
+        var node = new JmmNodeImpl(kind.getNodeName());
+        node.setHierarchy(CompactJmmNode.getHierarchy(kind));
+        return node;
+    }
+
+    /**
+     * Checks that both nodes have the same kind, hierarchy and attributes, and so do their children.
+     */
+    public static void assertSameTree(JmmNode expected, JmmNode actual) {
+        assertEquals(expected.getKind(), actual.getKind());
+        assertEquals(List.copyOf(expected.getHierarchy()), List.copyOf(actual.getHierarchy()));
+        assertEquals("Attributes of " + expected,
+                new HashSet<>(expected.getAttributes()), new HashSet<>(actual.getAttributes()));
+        for (String attribute : expected.getAttributes()) {
+            // attributes that hold a node are compared as their children
+            assertEquals("Attribute '" + attribute + "' of " + expected,
+                    expected.getObject(attribute).toString(), actual.getObject(attribute).toString());
+        }
+
+        assertEquals("Children of " + expected, expected.getNumChildren(), actual.getNumChildren());
+        for (int i = 0; i < expected.getNumChildren(); i++) {
+            assertSame(actual, actual.getJmmChild(i).getJmmParent());
+            assertSameTree(expected.getJmmChild(i), actual.getJmmChild(i));
+        }
+    }
+
+    @Test
+    public void attributes() {
+        Object type = List.of("int", false);
+        for (Function<Kind, JmmNode> factory : List.<Function<Kind, JmmNode>>of(CompactJmmNodeTest::newImpl,
+                CompactJmmNode::new)) {
+            var node = factory.apply(Kind.VAR_REF_EXPR);
+            var message = node.getClass().getSimpleName();
+
+            assertNull(message, node.put("name", "a"));
+            assertEquals(message, "a", node.put("name", "b"));
+            node.put("lineStart", "3");
+            // values that do not read back the same must be kept as they are
+            node.put("colStart", "007");
+            node.putObject("type", type);
+            node.putObject("op", 5);
+            node.put("custom", "value");
+
+            assertEquals(message, Set.of("name", "lineStart", "colStart", "type", "op", "custom"),
+                    new HashSet<>(node.getAttributes()));
+            assertEquals(message, "b", node.get("name"));
+            assertEquals(message, "3", node.get("lineStart"));
+            assertEquals(message, "007", node.get("colStart"));
+            assertSame(message, type, node.getObject("type"));
+            assertEquals(message, 5, node.getObject("op"));
+            assertEquals(message, "value", node.get("custom"));
+            assertTrue(message, node.hasAttribute("custom"));
+            assertFalse(message, node.hasAttribute("value"));
+            assertTrue(message, node.getOptional("value").isEmpty());
+
+            // a string again takes the place of the value of another type
+            node.putObject("op", "+");
+            assertEquals(message, "+", node.get("op"));
+            assertEquals(message, 6, node.getAttributes().size());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void missingAttribute() {
+        new CompactJmmNode(Kind.VAR_REF_EXPR).getObject("name");
+    }
+
+    @Test
+    public void children() {
+        JmmNode expected = buildChildren(CompactJmmNodeTest::newImpl);
+        JmmNode actual = buildChildren(CompactJmmNode::new);
+
+        assertSameTree(expected, actual);
+        assertEquals(expected.toTree(), actual.toTree());
+        assertSameTree(expected.copy(), actual.copy());
+    }
+
+    /**
+     * Applies the same changes to a tree of nodes created by the factory.
+     */
+    private static JmmNode buildChildren(Function<Kind, JmmNode> factory) {
+        var root = factory.apply(Kind.BINARY_EXPR);
+        root.put("op", "+");
+        var left = factory.apply(Kind.VAR_REF_EXPR);
+        left.put("name", "a");
+        var right = factory.apply(Kind.INTEGER_LITERAL);
+        right.put("value", "1");
+        root.add(right);
+        root.add(left, 0);
+        assertEquals(1, right.getIndexOfSelf());
+
+        var other = factory.apply(Kind.VAR_REF_EXPR);
+        other.put("name", "b");
+        root.setChild(other, 0);
+        assertNull(left.getJmmParent());
+        assertSame(root, other.getJmmParent());
+
+        // removing what is not there leaves the tree as it is
+        assertNull(root.removeJmmChild(2));
+        assertEquals(-1, root.removeJmmChild(left));
+        assertSame(left, left.detach());
+
+        var paren = factory.apply(Kind.PRIORITY_EXPR);
+        paren.add(left);
+        root.add(paren);
+        assertSame(right, root.removeJmmChild(1));
+        assertNull(right.getJmmParent());
+        assertSame(left, left.detach());
+        assertEquals(0, paren.getNumChildren());
+        return root;
+    }
+
+    @Test
+    public void parsedTree() {
+        for (String resource : PROGRAMS) {
+            var code = SpecsIo.getResource(resource);
+            Map<String, String> parseTreeConfig = new HashMap<>();
+            parseTreeConfig.put("parseTree", "true");
+
+            // -pt converts the ANTLR parse tree to JmmNodeImpl nodes, as the library does
+            var expected = TestUtils.parse(code, parseTreeConfig).getRootNode();
+            var actual = TestUtils.parse(code).getRootNode();
+
+            assertTrue(resource, actual instanceof CompactJmmNode);
+            assertFalse(resource, expected instanceof CompactJmmNode);
+            assertSameTree(expected, actual);
+        }
+    }
+}
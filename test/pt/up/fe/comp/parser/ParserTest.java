@@ -0,0 +1,122 @@
+package pt.up.fe.comp.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ParserTest {
+
+    /**
+     * Parses with a new lexer and parser, full LL prediction and the default error recovery, as the library does.
+     */
+    static JmmParserResult parseLL(String code, String startingRule) {
+        var lexer = new JavammLexer(new ANTLRInputStream(code));
+        var parser = new JavammParser(new CommonTokenStream(lexer));
+        return AntlrParser.parse(lexer, parser, startingRule, new HashMap<>());
+    }
+
+    static List<String> getReports(JmmParserResult result) {
+        return result.getReports().stream().map(Report::toString).toList();
+    }
+
+    /**
+     * Checks that the compiler parser gives the same tree and reports as a plain LL parse.
+     */
+    static JmmParserResult assertSameAsLL(String code, String startingRule) {
+        var expected = parseLL(code, startingRule);
+        var actual = TestUtils.getJmmParser().parse(code, startingRule, new HashMap<>());
+
+        assertEquals("Reports for\n" + code, getReports(expected), getReports(actual));
+        if (expected.getRootNode() == null) {
+            assertNull("Root node for\n" + code, actual.getRootNode());
+        } else {
+            CompactJmmNodeTest.assertSameTree(expected.getRootNode(), actual.getRootNode());
+        }
+        return actual;
+    }
+
+    static void assertValidSameAsLL(String code, String startingRule) {
+        var result = assertSameAsLL(code, startingRule);
+        assertNotNull("Root node for\n" + code + "\n" + result.getReports(), result.getRootNode());
+    }
+
+    @Test
+    public void invalidFallsBackToLL() {
+        // SLL stops at the first error, the LL parse reports it
+        assertSameAsLL("class A { public int foo() { return 1 +; } }", "program");
+        assertSameAsLL("class A { public int foo() { int a; a = (1 + 2; return a; } }", "program");
+        assertSameAsLL("class A extends { }", "program");
+    }
+
+    @Test
+    public void lexicalErrorFallsBackToLL() {
+        assertSameAsLL("class A { int # b; }", "program");
+    }
+
+    @Test
+    public void errorsReported() {
+        var result = TestUtils.getJmmParser().parse("class A { public int foo() { return 1 +; } }", "program",
+                new HashMap<>());
+        assertNull(result.getRootNode());
+        assertFalse(result.getReports().isEmpty());
+    }
+
+    @Test
+    public void validSameAsLL() {
+        // a call, an array access and a comparison all start with an expression, which SLL predicts without context
+        assertValidSameAsLL("class A { public int foo(int[] a) { boolean b; b = this.foo(a) < a[a.length - 1]"
+                + " && !true; return a[0]; } }", "program");
+        assertValidSameAsLL("if (a) if (b) c = 1; else c = 2; else { while (d) { e[f] = g; } }", "stmt");
+    }
+
+    @Test
+    public void consecutiveParses() {
+        var invalid = "class A { public int foo() { return 1 +; } }";
+        var valid = "class B { int a; public int foo(int b) { a = b * 2; return a; } }";
+
+        // each parse starts from the default settings, whatever the previous one left behind
+        var first = assertSameAsLL(invalid, "program");
+        assertValidSameAsLL(valid, "program");
+        var again = assertSameAsLL(invalid, "program");
+        assertEquals("Reports must not pile up", getReports(first), getReports(again));
+
+        Map<String, String> parseTreeConfig = new HashMap<>();
+        parseTreeConfig.put("parseTree", "true");
+        assertFalse(TestUtils.getJmmParser().parse(valid, "program", parseTreeConfig).getRootNode()
+                instanceof CompactJmmNode);
+        assertTrue(TestUtils.getJmmParser().parse(valid, "program", new HashMap<>()).getRootNode()
+                instanceof CompactJmmNode);
+
+        // error recovery walks up from the root context, which must not point into the previous parse
+        assertValidSameAsLL("a = b;", "stmt");
+        assertSameAsLL(invalid, "program");
+        assertValidSameAsLL("a", "expr");
+        assertSameAsLL(invalid, "program");
+        assertValidSameAsLL(valid, "program");
+
+        JmmParserImpl.clearCache();
+        assertValidSameAsLL(valid, "program");
+    }
+
+    @Test
+    public void leftRecursiveStartRule() {
+        // the whole input is one left-recursive expression, the root itself becomes the left operand
+        assertValidSameAsLL("a && b", "expr");
+        assertValidSameAsLL("a.b(c)[d].length * (e + f) / g < h && i", "expr");
+        assertValidSameAsLL("x.foo()", "expr");
+    }
+}
@@ -0,0 +1,303 @@
+package utils;
+
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Generates large, valid Java-- programs for scalability tests and benchmarks.
+ * <p>
+ * The same seed and shape always give the same program. Programs pass the semantic analysis and terminate when
+ * run: loops are bounded by counters the body never writes, methods only call methods declared after them and never
+ * inside loops, divisors are non-zero literals and array indexes are in bounds. Expressions nest along a single
+ * branch, so their size grows linearly with the depth.
+ */
+public class JmmProgramGenerator {
+
+    public static final String CLASS_NAME = "Synthetic";
+
+    private static final int ARRAY_SIZE = 8;
+    private static final int MAX_LOOP_ITERATIONS = 4;
+
+    /**
+     * Size and shape of the generated programs.
+     *
+     * @param fields           number of fields, alternating int and boolean
+     * @param methods          number of methods besides main and the varargs method
+     * @param statements       statements in each method, counting nested ones
+     * @param locals           int locals, and as many boolean locals, in each method
+     * @param expressionDepth  maximum nesting of expressions
+     * @param blockDepth       maximum nesting of if and while statements
+     * @param varargsArguments arguments in calls to the varargs method, 0 for none
+     */
+    public record Shape(int fields, int methods, int statements, int locals, int expressionDepth, int blockDepth,
+                        int varargsArguments) {
+
+        public static final Shape DEFAULT = new Shape(10, 10, 100, 8, 4, 3, 8);
+
+        public Shape withFields(int fields) {
+            return new Shape(fields, methods, statements, locals, expressionDepth, blockDepth, varargsArguments);
+        }
+
+        public Shape withMethods(int methods) {
+            return new Shape(fields, methods, statements, locals, expressionDepth, blockDepth, varargsArguments);
+        }
+
+        public Shape withStatements(int statements) {
+            return new Shape(fields, methods, statements, locals, expressionDepth, blockDepth, varargsArguments);
+        }
+
+        public Shape withLocals(int locals) {
+            return new Shape(fields, methods, statements, locals, expressionDepth, blockDepth, varargsArguments);
+        }
+
+        public Shape withExpressionDepth(int expressionDepth) {
+            return new Shape(fields, methods, statements, locals, expressionDepth, blockDepth, varargsArguments);
+        }
+
+        public Shape withBlockDepth(int blockDepth) {
+            return new Shape(fields, methods, statements, locals, expressionDepth, blockDepth, varargsArguments);
+        }
+
+        public Shape withVarargsArguments(int varargsArguments) {
+            return new Shape(fields, methods, statements, locals, expressionDepth, blockDepth, varargsArguments);
+        }
+    }
+
+    private final Shape shape;
+    private final Random random;
+    private final StringBuilder code = new StringBuilder();
+
+    // state of the method being generated
+    private int currentMethod;
+    private int remainingStatements;
+    private int loopDepth;
+
+    public JmmProgramGenerator(long seed, Shape shape) {
+        if (shape.locals() < 1) {
+            throw new IllegalArgumentException("Programs need at least one local of each type");
+        }
+        this.shape = shape;
+        this.random = new Random(seed);
+    }
+
+    public static String generate(long seed, Shape shape) {
+        return new JmmProgramGenerator(seed, shape).generate();
+    }
+
+    public String generate() {
+        code.setLength(0);
+        code.append("import io;\n\n");
+        code.append("class ").append(CLASS_NAME).append(" {\n");
+
+        for (int i = 0; i < shape.fields(); i++) {
+            code.append("    ").append(isIntField(i) ? "int" : "boolean").append(" f").append(i).append(";\n");
+        }
+        code.append('\n');
+
+        for (int i = 0; i < shape.methods(); i++) {
+            generateMethod(i);
+        }
+        if (shape.varargsArguments() > 0) {
+            generateVarargsMethod();
+        }
+        generateMain();
+
+        code.append("}\n");
+        return code.toString();
+    }
+
+    private static boolean isIntField(int field) {
+        return field % 2 == 0;
+    }
+
+    private void generateMethod(int method) {
+        currentMethod = method;
+        remainingStatements = shape.statements();
+        loopDepth = 0;
+
+        code.append("    public int m").append(method).append("(int p0, int p1) {\n");
+        for (int i = 0; i < shape.locals(); i++) {
+            code.append("        int i").append(i).append(";\n");
+            code.append("        boolean b").append(i).append(";\n");
+        }
+        for (int i = 0; i < shape.blockDepth(); i++) {
+            code.append("        int c").append(i).append(";\n");
+        }
+        code.append("        int[] a;\n");
+
+        // everything is written before it is read
+        for (int i = 0; i < shape.locals(); i++) {
+            code.append("        i").append(i).append(" = ").append(i % 2 == 0 ? "p0" : "p1").append(";\n");
+            code.append("        b").append(i).append(" = ").append(i % 2 == 0).append(";\n");
+        }
+        code.append("        a = new int[").append(ARRAY_SIZE).append("];\n");
+
+        while (remainingStatements > 0) {
+            generateStatement(2, 0);
+        }
+
+        code.append("        return ").append(intExpression(shape.expressionDepth())).append(";\n");
+        code.append("    }\n\n");
+    }
+
+    private void generateVarargsMethod() {
+        code.append("    public int sum(int... values) {\n");
+        code.append("        int i;\n");
+        code.append("        int total;\n");
+        code.append("        i = 0;\n");
+        code.append("        total = 0;\n");
+        code.append("        while (i < values.length) {\n");
+        code.append("            total = total + values[i];\n");
+        code.append("            i = i + 1;\n");
+        code.append("        }\n");
+        code.append("        return total;\n");
+        code.append("    }\n\n");
+    }
+
+    private void generateMain() {
+        code.append("    public static void main(String[] args) {\n");
+        code.append("        ").append(CLASS_NAME).append(" s;\n");
+        code.append("        int r;\n");
+        code.append("        s = new ").append(CLASS_NAME).append("();\n");
+        for (int i = 0; i < shape.methods(); i++) {
+            code.append("        r = s.m").append(i).append('(').append(random.nextInt(100)).append(", ")
+                    .append(random.nextInt(100)).append(");\n");
+            code.append("        io.println(r);\n");
+        }
+        code.append("    }\n");
+    }
+
+    private void generateStatement(int indent, int blockDepth) {
+        remainingStatements--;
+        var tab = "    ".repeat(indent);
+
+        int kind = random.nextInt(10);
+        boolean canNest = blockDepth < shape.blockDepth() && remainingStatements > 0;
+        // calls inside loops could multiply the work of the program beyond any bound
+        boolean canCall = loopDepth == 0;
+
+        if (kind == 0 && canNest) {
+            code.append(tab).append("if (").append(booleanExpression(shape.expressionDepth())).append(") {\n");
+            generateBlock(indent + 1, blockDepth + 1);
+            code.append(tab).append("} else {\n");
+            generateBlock(indent + 1, blockDepth + 1);
+            code.append(tab).append("}\n");
+        } else if (kind == 1 && canNest) {
+            var counter = "c" + blockDepth;
+            code.append(tab).append(counter).append(" = 0;\n");
+            code.append(tab).append("while (").append(counter).append(" < ")
+                    .append(1 + random.nextInt(MAX_LOOP_ITERATIONS)).append(") {\n");
+            loopDepth++;
+            generateBlock(indent + 1, blockDepth + 1);
+            loopDepth--;
+            code.append(tab).append("    ").append(counter).append(" = ").append(counter).append(" + 1;\n");
+            code.append(tab).append("}\n");
+        } else if (kind == 2 && canCall && currentMethod + 1 < shape.methods()) {
+            int callee = currentMethod + 1 + random.nextInt(shape.methods() - currentMethod - 1);
+            code.append(tab).append(intLocal()).append(" = this.m").append(callee).append('(')
+                    .append(intExpression(shape.expressionDepth())).append(", ")
+                    .append(intExpression(shape.expressionDepth())).append(");\n");
+        } else if (kind == 3 && canCall && shape.varargsArguments() > 0) {
+            code.append(tab).append(intLocal()).append(" = this.sum(");
+            for (int i = 0; i < shape.varargsArguments(); i++) {
+                code.append(i == 0 ? "" : ", ").append(intExpression(1));
+            }
+            code.append(");\n");
+        } else if (kind == 4) {
+            code.append(tab).append("a[").append(random.nextInt(ARRAY_SIZE)).append("] = ")
+                    .append(intExpression(shape.expressionDepth())).append(";\n");
+        } else if (kind == 5 && shape.fields() > 0) {
+            int field = random.nextInt(shape.fields());
+            code.append(tab).append('f').append(field).append(" = ")
+                    .append(isIntField(field) ? intExpression(shape.expressionDepth())
+                            : booleanExpression(shape.expressionDepth()))
+                    .append(";\n");
+        } else if (kind == 6) {
+            code.append(tab).append(booleanLocal()).append(" = ").append(booleanExpression(shape.expressionDepth()))
+                    .append(";\n");
+        } else {
+            code.append(tab).append(intLocal()).append(" = ").append(intExpression(shape.expressionDepth()))
+                    .append(";\n");
+        }
+    }
+
+    private void generateBlock(int indent, int blockDepth) {
+        int statements = Math.min(remainingStatements, 1 + random.nextInt(4));
+        for (int i = 0; i < statements; i++) {
+            generateStatement(indent, blockDepth);
+        }
+    }
+
+    private String intLocal() {
+        return "i" + random.nextInt(shape.locals());
+    }
+
+    private String booleanLocal() {
+        return "b" + random.nextInt(shape.locals());
+    }
+
+    private String intExpression(int depth) {
+        if (depth <= 0 || random.nextInt(4) == 0) {
+            return intLeaf();
+        }
+
+        var nested = intExpression(depth - 1);
+        return switch (random.nextInt(5)) {
+            case 0 -> intLeaf() + " + " + nested;
+            case 1 -> "(" + nested + ") - " + intLeaf();
+            case 2 -> intLeaf() + " * (" + nested + ")";
+            // a literal divisor is never zero
+            case 3 -> "(" + nested + ") / " + (1 + random.nextInt(9));
+            default -> "(" + nested + ")";
+        };
+    }
+
+    private String intLeaf() {
+        int field = random.nextInt(Math.max(shape.fields(), 1));
+        return switch (random.nextInt(6)) {
+            case 0 -> String.valueOf(random.nextInt(100));
+            case 1 -> "a[" + random.nextInt(ARRAY_SIZE) + "]";
+            case 2 -> "a.length";
+            case 3 -> shape.fields() > 0 && isIntField(field) ? "f" + field : "p" + random.nextInt(2);
+            default -> intLocal();
+        };
+    }
+
+    private String booleanExpression(int depth) {
+        if (depth <= 0 || random.nextInt(4) == 0) {
+            return booleanLeaf();
+        }
+
+        var nested = booleanExpression(depth - 1);
+        return switch (random.nextInt(3)) {
+            case 0 -> booleanLeaf() + " && " + nested;
+            case 1 -> "!(" + nested + ")";
+            default -> intLeaf() + " < " + intExpression(depth - 1);
+        };
+    }
+
+    private String booleanLeaf() {
+        int field = random.nextInt(Math.max(shape.fields(), 1));
+        return switch (random.nextInt(5)) {
+            case 0 -> String.valueOf(random.nextBoolean());
+            case 1 -> intLeaf() + " < " + intLeaf();
+            case 2 -> shape.fields() > 0 && !isIntField(field) ? "f" + field : booleanLocal();
+            default -> booleanLocal();
+        };
+    }
+
+    /**
+     * Writes a program to a file, e.g. to profile the compiler on it.
+     * <p>
+     * Arguments: seed, statements per method, output file.
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Expected <seed> <statements per method> <output file>");
+        }
+        var shape = Shape.DEFAULT.withStatements(Integer.parseInt(args[1]));
+        SpecsIo.write(new File(args[2]), generate(Long.parseLong(args[0]), shape));
+    }
+}